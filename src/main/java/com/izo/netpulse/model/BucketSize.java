@@ -0,0 +1,20 @@
+package com.izo.netpulse.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Width of the time buckets used to aggregate long stretches of history in the database.
+ * Buckets are aligned to local time: hours on the hour, days at midnight, weeks on Monday.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum BucketSize {
+
+    HOURLY(3_600),
+    DAILY(86_400),
+    WEEKLY(604_800);
+
+    /** The width of one bucket in seconds. */
+    private final long seconds;
+}
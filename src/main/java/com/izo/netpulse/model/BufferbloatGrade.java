@@ -0,0 +1,39 @@
+package com.izo.netpulse.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Letter grade describing how much latency rises while the link is saturated.
+ * Thresholds follow the widely used bufferbloat scale: the grade is driven by the increase of
+ * loaded over idle latency, not by the absolute latency of the connection.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum BufferbloatGrade {
+
+    A_PLUS("A+", 5),
+    A("A", 30),
+    B("B", 60),
+    C("C", 200),
+    D("D", 400),
+    F("F", Double.POSITIVE_INFINITY);
+
+    /** The label shown to the user, e.g. "A+". */
+    private final String label;
+
+    /** The largest latency increase, in milliseconds, that still earns this grade. */
+    private final double maxIncreaseMs;
+
+    /**
+     * Grades a latency increase under load.
+     * @param increaseMs Loaded latency minus idle latency, in milliseconds.
+     * @return The matching grade; negative increases earn the best grade.
+     */
+    public static BufferbloatGrade forIncrease(double increaseMs) {
+        for (BufferbloatGrade grade : values()) {
+            if (increaseMs <= grade.maxIncreaseMs) return grade;
+        }
+        return F;
+    }
+}
@@ -0,0 +1,154 @@
+package com.izo.netpulse.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * Full-resolution chart history as parallel primitive arrays (time, download, upload, result id),
+ * appended to at the end and trimmed at the front as the window slides.
+ * <p>This is what the history path loads from the database instead of entities: four primitives
+ * per result, with no per-row objects, so a window of a million results costs about 32 MB.</p>
+ * <p>The live points are the slice {@code [start, end)} of the arrays, so evicting expired points
+ * only moves {@code start}. Space is reclaimed when an append finds the arrays full: the live
+ * slice is moved to the front, and the arrays are doubled only if it still fills more than half
+ * of them. Both operations are therefore amortised O(1) per point.</p>
+ */
+public final class HistoryBuffer {
+
+    private double[] epochs;
+    private double[] download;
+    private double[] upload;
+    private long[] ids;
+    private int start;
+    private int end;
+    private long maxId;
+
+    /**
+     * @param capacity The initial number of points the buffer holds without growing.
+     */
+    public HistoryBuffer(int capacity) {
+        int size = Math.max(16, capacity);
+        epochs = new double[size];
+        download = new double[size];
+        upload = new double[size];
+        ids = new long[size];
+    }
+
+    /**
+     * Converts a local timestamp to the time unit of the buffer.
+     * @param time A local date-time in the system time zone.
+     * @return Seconds since the epoch, with millisecond precision.
+     */
+    public static double toEpochSeconds(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() / 1000.0;
+    }
+
+    /**
+     * Adds a point after the newest one.
+     * @param epoch    The time of the point in epoch seconds; not before the newest point.
+     * @param download The download speed in Mbps.
+     * @param upload   The upload speed in Mbps.
+     * @param id       The id of the result, or 0 for aggregated points.
+     */
+    public void append(double epoch, double download, double upload, long id) {
+        if (end == epochs.length) makeRoom();
+        epochs[end] = epoch;
+        this.download[end] = download;
+        this.upload[end] = upload;
+        ids[end] = id;
+        end++;
+        if (id > maxId) maxId = id;
+    }
+
+    /**
+     * Drops the oldest points up to and including a time.
+     * @param epoch The time in epoch seconds at or before which points are dropped.
+     * @return The number of points dropped.
+     */
+    public int evictThrough(double epoch) {
+        int from = start;
+        while (start < end && epochs[start] <= epoch) start++;
+        return start - from;
+    }
+
+    private void makeRoom() {
+        int size = end - start;
+        int capacity = size * 2 > epochs.length ? epochs.length * 2 : epochs.length;
+        if (capacity != epochs.length) {
+            epochs = Arrays.copyOfRange(epochs, start, start + capacity);
+            download = Arrays.copyOfRange(download, start, start + capacity);
+            upload = Arrays.copyOfRange(upload, start, start + capacity);
+            ids = Arrays.copyOfRange(ids, start, start + capacity);
+        } else {
+            System.arraycopy(epochs, start, epochs, 0, size);
+            System.arraycopy(download, start, download, 0, size);
+            System.arraycopy(upload, start, upload, 0, size);
+            System.arraycopy(ids, start, ids, 0, size);
+        }
+        start = 0;
+        end = size;
+    }
+
+    /**
+     * Copies a part of the live points into a new, independent buffer.
+     * @param from The first array index to copy, at least {@link #start()}.
+     * @param to   The array index after the last point to copy, at most {@link #end()}.
+     * @return A buffer holding exactly the copied points.
+     */
+    public HistoryBuffer copyOfRange(int from, int to) {
+        HistoryBuffer copy = new HistoryBuffer(to - from);
+        System.arraycopy(epochs, from, copy.epochs, 0, to - from);
+        System.arraycopy(download, from, copy.download, 0, to - from);
+        System.arraycopy(upload, from, copy.upload, 0, to - from);
+        System.arraycopy(ids, from, copy.ids, 0, to - from);
+        copy.end = to - from;
+        for (int i = from; i < to; i++) copy.maxId = Math.max(copy.maxId, ids[i]);
+        return copy;
+    }
+
+    /** @return The number of live points. */
+    public int size() {
+        return end - start;
+    }
+
+    /** @return The index of the oldest live point in the arrays. */
+    public int start() {
+        return start;
+    }
+
+    /** @return The index after the newest live point in the arrays. */
+    public int end() {
+        return end;
+    }
+
+    /** @return The time of the newest point in epoch seconds, or negative infinity if empty. */
+    public double lastEpoch() {
+        return end > start ? epochs[end - 1] : Double.NEGATIVE_INFINITY;
+    }
+
+    /** @return The largest result id ever appended, evicted points included, or 0 if none. */
+    public long maxId() {
+        return maxId;
+    }
+
+    /** @return The backing time array; only {@code [start(), end())} is live. */
+    public double[] epochs() {
+        return epochs;
+    }
+
+    /** @return The backing download array; only {@code [start(), end())} is live. */
+    public double[] download() {
+        return download;
+    }
+
+    /** @return The backing upload array; only {@code [start(), end())} is live. */
+    public double[] upload() {
+        return upload;
+    }
+
+    /** @return The backing id array; only {@code [start(), end())} is live. */
+    public long[] ids() {
+        return ids;
+    }
+}
@@ -0,0 +1,69 @@
+package com.izo.netpulse.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * Aggregate of the speed test results of one hour or one day whose raw rows have been
+ * removed by the retention job.
+ * <p>Hourly and daily rollups are both computed from the raw rows when they age out, so the
+ * statistics of either tier are exact. Hourly rollups are dropped after a longer retention
+ * period, leaving the daily tier for the oldest history.</p>
+ */
+@Entity
+@Table(indexes = @Index(name = "IDX_RESULT_ROLLUP_BUCKET", columnList = "bucketSize, bucketStart"))
+@Data
+public class ResultRollup {
+
+    /**
+     * The unique identifier for the rollup record.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * The tier of the rollup, {@link BucketSize#HOURLY} or {@link BucketSize#DAILY}.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16, nullable = false)
+    private BucketSize bucketSize;
+
+    /**
+     * The local start time of the hour or day.
+     */
+    @Column(nullable = false)
+    private LocalDateTime bucketStart;
+
+    /**
+     * The number of results rolled into the bucket.
+     */
+    private long samples;
+
+    /** The slowest download speed in the bucket, in Mbps. */
+    private double downloadMin;
+
+    /** The mean download speed in the bucket, in Mbps. */
+    private double downloadAvg;
+
+    /** The fastest download speed in the bucket, in Mbps. */
+    private double downloadMax;
+
+    /** The 95th percentile download speed in the bucket, in Mbps. */
+    @Column(name = "download_p95")
+    private double downloadP95;
+
+    /** The slowest upload speed in the bucket, in Mbps. */
+    private double uploadMin;
+
+    /** The mean upload speed in the bucket, in Mbps. */
+    private double uploadAvg;
+
+    /** The fastest upload speed in the bucket, in Mbps. */
+    private double uploadMax;
+
+    /** The 95th percentile upload speed in the bucket, in Mbps. */
+    @Column(name = "upload_p95")
+    private double uploadP95;
+}
@@ -0,0 +1,83 @@
+package com.izo.netpulse.model;
+
+import java.util.Arrays;
+
+/**
+ * The raw throughput samples of a single download or upload test, in the order they were taken.
+ * <p>Each sample holds the time since the test started in nanoseconds, the cumulative number of
+ * bytes transferred at that moment and the instantaneous rate of the preceding interval. Samples
+ * are kept in parallel primitive arrays that grow by doubling, so recording one never boxes and
+ * only allocates when the capacity is exhausted.</p>
+ * <p>Recording is meant for the single sampling thread of a test; the trace is read only after
+ * the test has finished.</p>
+ */
+public final class SampleTrace {
+
+    private long[] nanos;
+    private long[] bytes;
+    private double[] mbps;
+    private int size;
+
+    /** Creates an empty trace sized for a typical test of up to 15 seconds. */
+    public SampleTrace() {
+        this(128);
+    }
+
+    /**
+     * @param capacity The number of samples to reserve room for.
+     */
+    public SampleTrace(int capacity) {
+        int initial = Math.max(1, capacity);
+        this.nanos = new long[initial];
+        this.bytes = new long[initial];
+        this.mbps = new double[initial];
+    }
+
+    /**
+     * Appends a sample.
+     * @param elapsedNanos The time since the start of the test in nanoseconds.
+     * @param totalBytes   The cumulative number of bytes transferred.
+     * @param rateMbps     The instantaneous rate of the interval ending at this sample, in Mbps.
+     */
+    public void record(long elapsedNanos, long totalBytes, double rateMbps) {
+        if (size == nanos.length) {
+            int capacity = size * 2;
+            nanos = Arrays.copyOf(nanos, capacity);
+            bytes = Arrays.copyOf(bytes, capacity);
+            mbps = Arrays.copyOf(mbps, capacity);
+        }
+        nanos[size] = elapsedNanos;
+        bytes[size] = totalBytes;
+        mbps[size] = rateMbps;
+        size++;
+    }
+
+    /** @return The number of samples recorded. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index A sample index.
+     * @return The time of the sample since the start of the test, in nanoseconds.
+     */
+    public long getNanos(int index) {
+        return nanos[index];
+    }
+
+    /**
+     * @param index A sample index.
+     * @return The cumulative number of bytes transferred at the sample.
+     */
+    public long getBytes(int index) {
+        return bytes[index];
+    }
+
+    /**
+     * @param index A sample index.
+     * @return The instantaneous rate of the sample, in Mbps.
+     */
+    public double getMbps(int index) {
+        return mbps[index];
+    }
+}
@@ -9,6 +9,7 @@ import java.time.LocalDateTime;
  * This entity persists download and upload metrics along with a temporal record.
  */
 @Entity
+@Table(indexes = @Index(name = "IDX_SPEED_TEST_RESULT_TIMESTAMP", columnList = "timestamp"))
 @Data
 public class SpeedTestResult {
 
@@ -20,18 +21,169 @@ public class SpeedTestResult {
     private Long id;
 
     /**
-     * The measured download speed in Megabits per second (Mbps).
+     * The measured download speed in Megabits per second (Mbps), excluding the slow-start warm-up.
      */
     private double downloadMbps;
 
     /**
-     * The measured upload speed in Megabits per second (Mbps).
+     * The measured upload speed in Megabits per second (Mbps), excluding the slow-start warm-up.
      */
     private double uploadMbps;
 
+    /**
+     * The best download speed sustained over one second, in Mbps.
+     * Nullable because results recorded before slow-start detection have no peak figure.
+     */
+    private Double downloadPeakMbps;
+
+    /**
+     * The best upload speed sustained over one second, in Mbps.
+     */
+    private Double uploadPeakMbps;
+
+    /**
+     * How long the download warm-up excluded from {@link #downloadMbps} lasted, in milliseconds.
+     */
+    private Long downloadRampUpMs;
+
+    /**
+     * How long the upload warm-up excluded from {@link #uploadMbps} lasted, in milliseconds.
+     */
+    private Long uploadRampUpMs;
+
     /**
      * The date and time when the speed test was performed.
      */
     private LocalDateTime timestamp;
 
+    /**
+     * Compact histogram of the instantaneous download samples, encoded as sparse
+     * {@code bucket:count} pairs on a fixed logarithmic bucket layout.
+     */
+    @Column(length = 1024)
+    private String downloadHistogram;
+
+    /**
+     * Compact histogram of the instantaneous upload samples, using the same encoding as
+     * {@link #downloadHistogram}.
+     */
+    @Column(length = 1024)
+    private String uploadHistogram;
+
+    /**
+     * The fastest idle round trip (time-to-first-byte) in milliseconds.
+     * Nullable because results recorded before phase-resolved probing have no latency breakdown.
+     */
+    private Double latencyMinMs;
+
+    /**
+     * The mean idle round trip in milliseconds.
+     */
+    private Double latencyAvgMs;
+
+    /**
+     * The 95th percentile idle round trip in milliseconds.
+     */
+    private Double latencyP95Ms;
+
+    /**
+     * The mean absolute difference between consecutive idle round trips in milliseconds.
+     */
+    private Double jitterMs;
+
+    /**
+     * The share of idle latency probes that failed or timed out, in percent.
+     */
+    private Double probeLossPercent;
+
+    /**
+     * The DNS resolution time of the probe connection in milliseconds.
+     */
+    private Double dnsMs;
+
+    /**
+     * The TCP handshake time of the probe connection in milliseconds.
+     */
+    private Double connectMs;
+
+    /**
+     * The TLS handshake time of the probe connection in milliseconds.
+     */
+    private Double tlsMs;
+
+    /**
+     * The mean round trip measured while the download test saturated the link, in milliseconds.
+     */
+    private Double downloadLatencyMs;
+
+    /**
+     * The jitter measured while the download test saturated the link, in milliseconds.
+     */
+    private Double downloadJitterMs;
+
+    /**
+     * The mean round trip measured while the upload test saturated the link, in milliseconds.
+     */
+    private Double uploadLatencyMs;
+
+    /**
+     * The jitter measured while the upload test saturated the link, in milliseconds.
+     */
+    private Double uploadJitterMs;
+
+    /**
+     * The grade of the latency increase under load, or {@code null} if it could not be measured.
+     */
+    @Enumerated(EnumType.STRING)
+    private BufferbloatGrade bufferbloatGrade;
+
+    /**
+     * The payload bytes received across all download streams.
+     * Nullable, like every field below, because results recorded by older versions lack it.
+     */
+    private Long downloadBytes;
+
+    /**
+     * The payload bytes sent across all upload streams.
+     */
+    private Long uploadBytes;
+
+    /**
+     * How long the download test ran, in milliseconds.
+     */
+    private Long downloadDurationMs;
+
+    /**
+     * How long the upload test ran, in milliseconds.
+     */
+    private Long uploadDurationMs;
+
+    /**
+     * The number of concurrent download streams by the end of the test.
+     */
+    private Integer downloadStreams;
+
+    /**
+     * The number of concurrent upload streams.
+     */
+    private Integer uploadStreams;
+
+    /**
+     * The name of the speed test backend the test ran against, e.g. "cloudflare".
+     */
+    @Column(length = 32)
+    private String backend;
+
+    /**
+     * The address of the server that answered the latency probes, e.g. "104.16.1.1:443".
+     */
+    @Column(length = 64)
+    private String serverAddress;
+
+    /**
+     * The display name of the local network interface the test traffic left from.
+     */
+    @Column(length = 128)
+    private String networkInterface;
+
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.izo.netpulse.model;
+
+/**
+ * The direction of a throughput test, used to key the per-phase data of a result.
+ */
+public enum TransferDirection {
+    DOWNLOAD,
+    UPLOAD
+}
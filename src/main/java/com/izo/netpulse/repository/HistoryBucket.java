@@ -0,0 +1,40 @@
+package com.izo.netpulse.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection of one time bucket of aggregated history, as returned by
+ * {@link SpeedRepository#aggregateHistory(LocalDateTime, long)}.
+ */
+public interface HistoryBucket {
+
+    /** @return The local start time of the bucket. */
+    LocalDateTime getBucketStart();
+
+    /** @return The number of results that fell into the bucket. */
+    long getSamples();
+
+    /** @return The slowest download speed in the bucket, in Mbps. */
+    double getDownloadMin();
+
+    /** @return The mean download speed in the bucket, in Mbps. */
+    double getDownloadAvg();
+
+    /** @return The fastest download speed in the bucket, in Mbps. */
+    double getDownloadMax();
+
+    /** @return The 95th percentile download speed in the bucket, in Mbps. */
+    double getDownloadP95();
+
+    /** @return The slowest upload speed in the bucket, in Mbps. */
+    double getUploadMin();
+
+    /** @return The mean upload speed in the bucket, in Mbps. */
+    double getUploadAvg();
+
+    /** @return The fastest upload speed in the bucket, in Mbps. */
+    double getUploadMax();
+
+    /** @return The 95th percentile upload speed in the bucket, in Mbps. */
+    double getUploadP95();
+}
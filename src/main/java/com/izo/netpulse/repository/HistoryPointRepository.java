@@ -0,0 +1,61 @@
+package com.izo.netpulse.repository;
+
+import com.izo.netpulse.model.HistoryBuffer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only projection of the results the history chart plots: id, time, download and upload.
+ * <p>{@link SpeedRepository} returns managed {@link com.izo.netpulse.model.SpeedTestResult}
+ * entities, each with every column, a dirty-checking snapshot and a persistence context entry.
+ * These queries select the four columns through plain JDBC and write them straight into the
+ * primitive arrays of a {@link HistoryBuffer}, so no object is kept per row. Like the entity
+ * lookups, they filter and sort using the index on {@code timestamp}.</p>
+ */
+@Component
+public class HistoryPointRepository {
+
+    private static final String SELECT = "SELECT ID, TIMESTAMP, DOWNLOAD_MBPS, UPLOAD_MBPS FROM SPEED_TEST_RESULT ";
+
+    private final JdbcTemplate jdbc;
+
+    /**
+     * @param jdbc The template the projections run on.
+     */
+    public HistoryPointRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Loads every result recorded after a cutoff, oldest first.
+     * @param cutoff The exclusive lower bound of the window.
+     * @return The chart points of the window.
+     */
+    public HistoryBuffer findAfter(LocalDateTime cutoff) {
+        HistoryBuffer points = new HistoryBuffer(1024);
+        jdbc.query(SELECT + "WHERE TIMESTAMP > ? ORDER BY TIMESTAMP", appender(points), cutoff);
+        return points;
+    }
+
+    /**
+     * Loads the results committed after a known one that fall within a window, oldest first.
+     * Ids only grow, so the primary key bounds the scan to the new rows.
+     * @param cutoff  The exclusive lower bound of the window.
+     * @param afterId The highest id already known.
+     * @return The chart points of the newer results.
+     */
+    public HistoryBuffer findAfter(LocalDateTime cutoff, long afterId) {
+        HistoryBuffer points = new HistoryBuffer(16);
+        jdbc.query(SELECT + "WHERE ID > ? AND TIMESTAMP > ? ORDER BY TIMESTAMP", appender(points), afterId, cutoff);
+        return points;
+    }
+
+    private static RowCallbackHandler appender(HistoryBuffer points) {
+        // Timestamp#getTime interprets the local value in the system zone, like HistoryBuffer#toEpochSeconds
+        return resultSet -> points.append(resultSet.getTimestamp(2).getTime() / 1000.0,
+                resultSet.getDouble(3), resultSet.getDouble(4), resultSet.getLong(1));
+    }
+}
@@ -0,0 +1,91 @@
+package com.izo.netpulse.repository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Applies versioned data migrations to the local H2 database at startup.
+ * <p>Hibernate's {@code ddl-auto=update} adds new nullable columns and indexes to existing
+ * database files, but it never backfills data or changes existing structures. This migrator
+ * runs right after Hibernate has updated the schema and applies every migration newer than the
+ * version recorded in {@value #VERSION_TABLE}, exactly once per database file.</p>
+ * <p>Each migration and the recording of its version run in one transaction, so a crash part-way
+ * leaves neither behind and the step is simply retried on the next start. H2 commits DDL
+ * implicitly, so schema statements must also be safe to repeat, e.g.
+ * {@code ALTER TABLE ... ADD COLUMN IF NOT EXISTS}.</p>
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+public class SchemaMigrator {
+
+    static final String VERSION_TABLE = "NETPULSE_SCHEMA_VERSION";
+
+    /**
+     * Ordered list of migrations. Append only; never edit or reorder an entry that has shipped.
+     * DDL must use {@code IF NOT EXISTS} / {@code IF EXISTS} forms, see the class comment.
+     */
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Tag results recorded before backend selection with the only backend that existed",
+                    "UPDATE SPEED_TEST_RESULT SET BACKEND = 'cloudflare' WHERE BACKEND IS NULL")
+    );
+
+    /** The version a fully migrated database reports. */
+    public static final int LATEST_VERSION = MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactions;
+
+    /**
+     * @param jdbc         The template the migrations run on.
+     * @param transactions Runs each migration together with its version bump.
+     */
+    public SchemaMigrator(JdbcTemplate jdbc, TransactionTemplate transactions) {
+        this.jdbc = jdbc;
+        this.transactions = transactions;
+    }
+
+    /**
+     * Brings the database up to {@link #LATEST_VERSION}. Safe to call repeatedly.
+     */
+    @PostConstruct
+    public synchronized void migrate() {
+        jdbc.execute("CREATE TABLE IF NOT EXISTS " + VERSION_TABLE
+                + " (VERSION INT PRIMARY KEY, DESCRIPTION VARCHAR(255), APPLIED_AT TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+
+        int current = getCurrentVersion();
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version() <= current) continue;
+            transactions.executeWithoutResult(status -> {
+                for (String statement : migration.statements()) {
+                    jdbc.execute(statement);
+                }
+                jdbc.update("INSERT INTO " + VERSION_TABLE + " (VERSION, DESCRIPTION) VALUES (?, ?)",
+                        migration.version(), migration.description());
+            });
+            log.info("Applied schema migration {}: {}", migration.version(), migration.description());
+        }
+    }
+
+    /**
+     * @return The highest migration version applied to this database, or {@code 0} for a new one.
+     */
+    public int getCurrentVersion() {
+        Integer version = jdbc.queryForObject("SELECT MAX(VERSION) FROM " + VERSION_TABLE, Integer.class);
+        return version == null ? 0 : version;
+    }
+
+    /**
+     * A single versioned migration step.
+     * @param version     Strictly increasing version number.
+     * @param description Human-readable summary, stored in the version table.
+     * @param statements  SQL statements executed in order.
+     */
+    private record Migration(int version, String description, String... statements) {}
+}
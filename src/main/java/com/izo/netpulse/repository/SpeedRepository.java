@@ -2,12 +2,80 @@ package com.izo.netpulse.repository;
 
 import com.izo.netpulse.model.SpeedTestResult;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 /**
  * Repository interface for {@link SpeedTestResult} entities.
  * Provides standard CRUD operations and database interaction logic via Spring Data JPA.
+ * <p>Time-range lookups filter and sort in the database using the index on {@code timestamp},
+ * so their cost follows the size of the requested window rather than the whole history.</p>
  */
 @Repository
 public interface SpeedRepository extends JpaRepository<SpeedTestResult, Long> {
-}
\ No newline at end of file
+
+    /**
+     * Retrieves every result recorded after a cutoff, oldest first.
+     * @param cutoff The exclusive lower bound of the window.
+     * @return The matching results in chronological order.
+     */
+    List<SpeedTestResult> findByTimestampAfterOrderByTimestampAsc(LocalDateTime cutoff);
+
+    /**
+     * Aggregates the history after a cutoff into fixed-width time buckets, entirely in H2.
+     * <p>Buckets are counted from Monday 1970-01-05 in local time, so hourly, daily and weekly
+     * buckets line up with the hour, midnight and Monday respectively. Only non-empty buckets
+     * are returned, so the result size is bounded by the window divided by the bucket width.</p>
+     * <p>Raw results and the rollups left by the retention job are read together. Hourly
+     * requests use the hourly rollups, falling back to daily ones for the days whose hourly tier
+     * has been pruned; daily and weekly requests use the daily rollups. When several parts share a bucket,
+     * counts are summed, means are weighted by count and the p95 is the highest of the parts, an
+     * upper bound. A bucket made of a single part is exact.</p>
+     * @param cutoff        The exclusive lower bound of the window.
+     * @param bucketSeconds The width of one bucket, see {@link com.izo.netpulse.model.BucketSize}.
+     * @return Per-bucket min/avg/max/p95 download and upload speeds, oldest bucket first.
+     */
+    @Query(value = """
+            SELECT DATEADD(SECOND, p.BUCKET * :bucketSeconds, TIMESTAMP '1970-01-05 00:00:00') AS "bucketStart",
+                   CAST(SUM(p.SAMPLES) AS BIGINT) AS "samples",
+                   MIN(p.DOWNLOAD_MIN) AS "downloadMin",
+                   SUM(p.DOWNLOAD_AVG * p.SAMPLES) / CAST(SUM(p.SAMPLES) AS DOUBLE PRECISION) AS "downloadAvg",
+                   MAX(p.DOWNLOAD_MAX) AS "downloadMax",
+                   MAX(p.DOWNLOAD_P95) AS "downloadP95",
+                   MIN(p.UPLOAD_MIN) AS "uploadMin",
+                   SUM(p.UPLOAD_AVG * p.SAMPLES) / CAST(SUM(p.SAMPLES) AS DOUBLE PRECISION) AS "uploadAvg",
+                   MAX(p.UPLOAD_MAX) AS "uploadMax",
+                   MAX(p.UPLOAD_P95) AS "uploadP95"
+            FROM (SELECT b.BUCKET,
+                         COUNT(*) AS SAMPLES,
+                         MIN(b.DOWNLOAD_MBPS) AS DOWNLOAD_MIN,
+                         AVG(b.DOWNLOAD_MBPS) AS DOWNLOAD_AVG,
+                         MAX(b.DOWNLOAD_MBPS) AS DOWNLOAD_MAX,
+                         PERCENTILE_CONT(0.95) WITHIN GROUP (ORDER BY b.DOWNLOAD_MBPS) AS DOWNLOAD_P95,
+                         MIN(b.UPLOAD_MBPS) AS UPLOAD_MIN,
+                         AVG(b.UPLOAD_MBPS) AS UPLOAD_AVG,
+                         MAX(b.UPLOAD_MBPS) AS UPLOAD_MAX,
+                         PERCENTILE_CONT(0.95) WITHIN GROUP (ORDER BY b.UPLOAD_MBPS) AS UPLOAD_P95
+                  FROM (SELECT FLOOR(DATEDIFF(SECOND, TIMESTAMP '1970-01-05 00:00:00', r.TIMESTAMP) / :bucketSeconds) AS BUCKET,
+                               r.DOWNLOAD_MBPS, r.UPLOAD_MBPS
+                        FROM SPEED_TEST_RESULT r
+                        WHERE r.TIMESTAMP > :cutoff) b
+                  GROUP BY b.BUCKET
+                  UNION ALL
+                  SELECT FLOOR(DATEDIFF(SECOND, TIMESTAMP '1970-01-05 00:00:00', u.BUCKET_START) / :bucketSeconds),
+                         u.SAMPLES, u.DOWNLOAD_MIN, u.DOWNLOAD_AVG, u.DOWNLOAD_MAX, u.DOWNLOAD_P95,
+                         u.UPLOAD_MIN, u.UPLOAD_AVG, u.UPLOAD_MAX, u.UPLOAD_P95
+                  FROM RESULT_ROLLUP u
+                  WHERE u.BUCKET_START > :cutoff
+                    AND (u.BUCKET_SIZE = CASE WHEN :bucketSeconds >= 86400 THEN 'DAILY' ELSE 'HOURLY' END
+                         OR (u.BUCKET_SIZE = 'DAILY' AND DATEADD(DAY, 1, u.BUCKET_START) <=
+                             (SELECT COALESCE(MIN(h.BUCKET_START), TIMESTAMP '9999-12-31 00:00:00')
+                              FROM RESULT_ROLLUP h WHERE h.BUCKET_SIZE = 'HOURLY')))) p
+            GROUP BY p.BUCKET
+            ORDER BY p.BUCKET
+            """, nativeQuery = true)
+    List<HistoryBucket> aggregateHistory(LocalDateTime cutoff, long bucketSeconds);
+}
@@ -0,0 +1,366 @@
+package com.izo.netpulse.repository;
+
+import com.izo.netpulse.model.SampleTrace;
+import com.izo.netpulse.model.TransferDirection;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Append-only binary store for the raw sample traces of every persisted speed test.
+ * <p>Traces live outside H2 in daily segment files ({@code trace-yyyyMMdd-N.seg}) of a fixed,
+ * preallocated size that are appended to through a {@link MappedByteBuffer}. A block holds one
+ * trace: a magic number, the result id, the direction, the sample count and then 24 bytes per
+ * sample (elapsed nanos, cumulative bytes, Mbps). The magic number is written last, so a block
+ * torn by a crash is never seen, and reopening a segment resumes after its last complete block.
+ * A segment that fills up rolls over to the next sequence number of the same day.</p>
+ * <p>A separate append-only index file ({@code traces.idx}) maps result id and direction to the
+ * segment and offset of the block. It is loaded into memory on first use, so reading a trace
+ * touches only its own block.</p>
+ * <p>Appends are made by the {@code ResultWriter} thread after the result row is committed,
+ * never by the sampling threads of a running test.</p>
+ */
+@Slf4j
+@Component
+public class TraceStore {
+
+    private static final int MAGIC = 0x4E505452; // "NPTR"
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES + 1 + Integer.BYTES;
+    private static final int SAMPLE_BYTES = Long.BYTES + Long.BYTES + Double.BYTES;
+    private static final int INDEX_ENTRY_BYTES = Long.BYTES + 1 + Integer.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final String INDEX_FILE = "traces.idx";
+    private static final DateTimeFormatter SEGMENT_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final Path directory;
+    private final int segmentBytes;
+
+    private Map<Long, Location[]> index;
+    private FileChannel indexChannel;
+    private Segment current;
+
+    /**
+     * @param directory    The directory holding the segment and index files.
+     * @param segmentBytes The preallocated size of every segment file.
+     */
+    public TraceStore(@Value("${netpulse.trace.directory:./data/traces}") String directory,
+                      @Value("${netpulse.trace.segment-bytes:4194304}") int segmentBytes) {
+        this.directory = Path.of(directory);
+        this.segmentBytes = Math.max(HEADER_BYTES + SAMPLE_BYTES, segmentBytes);
+    }
+
+    /**
+     * Appends a trace to the segment of the given day and records it in the index.
+     * @param resultId  The id of the persisted result the trace belongs to.
+     * @param date      The day of the test, which selects the segment.
+     * @param direction The phase the samples were taken in.
+     * @param trace     The samples, possibly {@code null} or empty, in which case nothing is written.
+     * @return {@code true} if the trace was stored.
+     */
+    public synchronized boolean append(long resultId, LocalDate date, TransferDirection direction, SampleTrace trace) {
+        if (trace == null || trace.size() == 0) return false;
+        int blockBytes = HEADER_BYTES + trace.size() * SAMPLE_BYTES;
+        if (blockBytes > segmentBytes) {
+            log.warn("Trace of result {} ({} samples) does not fit in a segment", resultId, trace.size());
+            return false;
+        }
+
+        try {
+            loadIndex();
+            Segment segment = segmentFor(date, blockBytes);
+            MappedByteBuffer buffer = segment.buffer;
+            int offset = segment.position;
+
+            buffer.position(offset + Integer.BYTES);
+            buffer.putLong(resultId);
+            buffer.put((byte) direction.ordinal());
+            buffer.putInt(trace.size());
+            for (int i = 0; i < trace.size(); i++) {
+                buffer.putLong(trace.getNanos(i));
+                buffer.putLong(trace.getBytes(i));
+                buffer.putDouble(trace.getMbps(i));
+            }
+            buffer.putInt(offset, MAGIC);
+            segment.position = offset + blockBytes;
+
+            Location location = new Location(segment.date, segment.sequence, offset);
+            writeIndexEntry(indexChannel, resultId, direction.ordinal(), location);
+            index.computeIfAbsent(resultId, id -> new Location[TransferDirection.values().length])[direction.ordinal()] = location;
+            return true;
+        } catch (IOException e) {
+            log.error("Failed to append trace of result {}", resultId, e);
+            return false;
+        }
+    }
+
+    /**
+     * Reads a stored trace back.
+     * @param resultId  The id of the result.
+     * @param direction The phase to read.
+     * @return The samples, or empty if none were stored or their segment no longer exists.
+     */
+    public synchronized Optional<SampleTrace> read(long resultId, TransferDirection direction) {
+        try {
+            loadIndex();
+            Location[] locations = index.get(resultId);
+            Location location = locations == null ? null : locations[direction.ordinal()];
+            if (location == null) return Optional.empty();
+
+            Path file = segmentPath(location.date(), location.sequence());
+            if (!Files.exists(file)) return Optional.empty();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, location.offset(), HEADER_BYTES);
+                if (header.getInt() != MAGIC || header.getLong() != resultId || header.get() != direction.ordinal()) {
+                    log.warn("Trace index entry of result {} points at a foreign block", resultId);
+                    return Optional.empty();
+                }
+                int count = header.getInt();
+                ByteBuffer samples = channel.map(FileChannel.MapMode.READ_ONLY,
+                        location.offset() + HEADER_BYTES, (long) count * SAMPLE_BYTES);
+                SampleTrace trace = new SampleTrace(count);
+                for (int i = 0; i < count; i++) {
+                    trace.record(samples.getLong(), samples.getLong(), samples.getDouble());
+                }
+                return Optional.of(trace);
+            }
+        } catch (IOException e) {
+            log.error("Failed to read trace of result {}", resultId, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param resultId The id of a result.
+     * @return {@code true} if at least one phase of the result has an indexed trace.
+     */
+    public synchronized boolean contains(long resultId) {
+        try {
+            loadIndex();
+            return index.containsKey(resultId);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Deletes every segment of the days before a cutoff and drops their traces from the index.
+     * Used by the retention job once the results of those days have been rolled up.
+     * @param cutoff The first day whose segments are kept.
+     * @return The number of segment files deleted.
+     */
+    public synchronized int deleteBefore(LocalDate cutoff) {
+        try {
+            loadIndex();
+            if (current != null && current.date.isBefore(cutoff)) closeCurrent();
+
+            int deleted = 0;
+            try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "trace-*.seg")) {
+                for (Path file : segments) {
+                    LocalDate date = segmentDate(file);
+                    if (date != null && date.isBefore(cutoff)) {
+                        Files.delete(file);
+                        deleted++;
+                    }
+                }
+            }
+            if (deleted > 0) {
+                index.values().forEach(locations -> {
+                    for (int i = 0; i < locations.length; i++) {
+                        if (locations[i] != null && locations[i].date().isBefore(cutoff)) locations[i] = null;
+                    }
+                });
+                index.values().removeIf(locations -> Arrays.stream(locations).allMatch(Objects::isNull));
+                rewriteIndex();
+            }
+            return deleted;
+        } catch (IOException e) {
+            log.error("Failed to delete trace segments before {}", cutoff, e);
+            return 0;
+        }
+    }
+
+    /**
+     * Replaces the index file with the entries still in memory, via a temporary file so a crash
+     * leaves either the old or the new index.
+     */
+    private void rewriteIndex() throws IOException {
+        Path target = directory.resolve(INDEX_FILE);
+        Path temp = directory.resolve(INDEX_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Map.Entry<Long, Location[]> entry : index.entrySet()) {
+                Location[] locations = entry.getValue();
+                for (int direction = 0; direction < locations.length; direction++) {
+                    if (locations[direction] != null) writeIndexEntry(channel, entry.getKey(), direction, locations[direction]);
+                }
+            }
+            channel.force(false);
+        }
+        indexChannel.close();
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        indexChannel = FileChannel.open(target, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        indexChannel.position(indexChannel.size());
+    }
+
+    private static void writeIndexEntry(FileChannel channel, long resultId, int direction, Location location) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES)
+                .putLong(resultId)
+                .put((byte) direction)
+                .putInt((int) location.date().toEpochDay())
+                .putInt(location.sequence())
+                .putInt(location.offset())
+                .flip();
+        while (entry.hasRemaining()) channel.write(entry);
+    }
+
+    /**
+     * @param file A segment file.
+     * @return The day encoded in its name, or {@code null} if the name is not a segment name.
+     */
+    private static LocalDate segmentDate(Path file) {
+        String name = file.getFileName().toString();
+        if (name.length() < 14) return null;
+        try {
+            return LocalDate.parse(name.substring(6, 14), SEGMENT_DATE);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the segment that receives the next block of the given day, opening or rolling
+     * over to a new segment when the current one belongs to another day or is full.
+     */
+    private Segment segmentFor(LocalDate date, int blockBytes) throws IOException {
+        if (current != null && current.date.equals(date) && current.position + blockBytes <= segmentBytes) {
+            return current;
+        }
+        int sequence = current != null && current.date.equals(date) ? current.sequence + 1 : 0;
+        closeCurrent();
+        while (true) {
+            Segment segment = openSegment(date, sequence);
+            if (segment.position + blockBytes <= segmentBytes) {
+                current = segment;
+                return segment;
+            }
+            segment.close();
+            sequence++;
+        }
+    }
+
+    /**
+     * Maps a segment file, creating it if needed, and finds the end of its last complete block.
+     */
+    private Segment openSegment(LocalDate date, int sequence) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(date, sequence),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        int position = 0;
+        while (position + HEADER_BYTES <= segmentBytes && buffer.getInt(position) == MAGIC) {
+            int count = buffer.getInt(position + Integer.BYTES + Long.BYTES + 1);
+            long end = position + HEADER_BYTES + (long) count * SAMPLE_BYTES;
+            if (count < 0 || end > segmentBytes) break;
+            position = (int) end;
+        }
+        return new Segment(date, sequence, channel, buffer, position);
+    }
+
+    private Path segmentPath(LocalDate date, int sequence) {
+        return directory.resolve("trace-" + date.format(SEGMENT_DATE) + "-" + sequence + ".seg");
+    }
+
+    /**
+     * Opens the index file and loads it into memory on first use. A torn entry at the end,
+     * left by a crash during an append, is truncated away.
+     */
+    private void loadIndex() throws IOException {
+        if (index != null) return;
+        Files.createDirectories(directory);
+        indexChannel = FileChannel.open(directory.resolve(INDEX_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long complete = indexChannel.size() / INDEX_ENTRY_BYTES * INDEX_ENTRY_BYTES;
+        indexChannel.truncate(complete);
+
+        Map<Long, Location[]> loaded = new HashMap<>();
+        if (complete > 0) {
+            ByteBuffer entries = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, complete);
+            while (entries.hasRemaining()) {
+                long resultId = entries.getLong();
+                int direction = entries.get();
+                Location location = new Location(LocalDate.ofEpochDay(entries.getInt()), entries.getInt(), entries.getInt());
+                if (direction < 0 || direction >= TransferDirection.values().length) continue;
+                loaded.computeIfAbsent(resultId, id -> new Location[TransferDirection.values().length])[direction] = location;
+            }
+        }
+        indexChannel.position(complete);
+        index = loaded;
+    }
+
+    private void closeCurrent() throws IOException {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+    }
+
+    /**
+     * Flushes the open segment and the index to disk when the context closes.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        try {
+            closeCurrent();
+            if (indexChannel != null) {
+                indexChannel.force(false);
+                indexChannel.close();
+                indexChannel = null;
+                index = null;
+            }
+        } catch (IOException e) {
+            log.warn("Failed to close trace store cleanly", e);
+        }
+    }
+
+    /** Where a trace block is stored. */
+    private record Location(LocalDate date, int sequence, int offset) {}
+
+    /** An open, mapped segment file and its append position. */
+    private static final class Segment {
+        private final LocalDate date;
+        private final int sequence;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int position;
+
+        private Segment(LocalDate date, int sequence, FileChannel channel, MappedByteBuffer buffer, int position) {
+            this.date = date;
+            this.sequence = sequence;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        private void close() throws IOException {
+            buffer.force();
+            channel.close();
+        }
+    }
+}
@@ -60,32 +60,55 @@ public class BackgroundMonitorService {
     }
 
     /**
-     * Executes the background test sequence, performing a download test followed by an upload test.
-     * Results are automatically persisted to the database upon completion.
+     * Executes the background test sequence in its own session, measuring idle latency first, then performing
+     * a download test followed by an upload test. Results are automatically persisted to the database upon completion.
+     * Losing every latency probe does not stop the sequence; the result is saved with 100% probe loss.
+     * The session is isolated, so a manual test running at the same time is neither cancelled nor corrupted.
      *
      * @param onCompleteCallback The callback to notify upon successful completion.
      */
     private void runBackgroundTest(Runnable onCompleteCallback) {
-        log.info("Starting background test...");
-        speedTestService.runDownloadTest(new SpeedTestService.TestCallback() {
+        TestSession session = speedTestService.newSession();
+        log.info("Starting background test (session {})...", session.getId());
+        speedTestService.measureLatency(session, latency -> {
+            if (SpeedTestService.isLost(latency)) log.warn("BG Latency: all probes lost");
+            speedTestService.runDownloadTest(session, new SpeedTestService.TestCallback() {
+                @Override public void onInstantUpdate(double mbps) {}
+                @Override
+                public void onResult(ThroughputResult download) {
+                    runBackgroundUpload(session, onCompleteCallback);
+                }
+                @Override public void onError(String msg) { log.error("BG Download Error: {}", msg); }
+            });
+        });
+    }
+
+    /**
+     * Runs the upload phase of a background test and persists the complete result.
+     *
+     * @param session            The background session whose latency and download phases have completed.
+     * @param onCompleteCallback The callback to notify upon successful completion.
+     */
+    private void runBackgroundUpload(TestSession session, Runnable onCompleteCallback) {
+        speedTestService.runUploadTest(session, new SpeedTestService.TestCallback() {
             @Override public void onInstantUpdate(double mbps) {}
             @Override
-            public void onComplete(double avgDl) {
-                speedTestService.runUploadTest(new SpeedTestService.TestCallback() {
-                    @Override public void onInstantUpdate(double mbps) {}
-                    @Override
-                    public void onComplete(double avgUl) {
-                        speedTestService.saveResult(avgDl, avgUl);
-                        log.info("Background test complete. DL: {} Mbps | UL: {} Mbps", avgDl, avgUl);
+            public void onResult(ThroughputResult upload) {
+                ThroughputResult download = session.getDownload();
+                LatencyResult latency = session.getLatency();
+                log.info("Background test complete. DL: {} Mbps | UL: {} Mbps | Latency: {} | Bufferbloat: {}",
+                        download.getAverageMbps(), upload.getAverageMbps(),
+                        SpeedTestService.isLost(latency) ? "lost" : latency.getAvgMs() + " ms",
+                        SpeedTestService.gradeBufferbloat(latency, download, upload));
 
-                        if (onCompleteCallback != null) {
-                            onCompleteCallback.run();
-                        }
+                // The callback refreshes the history, so it waits for the row to be committed
+                speedTestService.saveResult(session).thenRun(() -> {
+                    if (onCompleteCallback != null) {
+                        onCompleteCallback.run();
                     }
-                    @Override public void onError(String msg) { log.error("BG Upload Error: {}", msg); }
                 });
             }
-            @Override public void onError(String msg) { log.error("BG Download Error: {}", msg); }
+            @Override public void onError(String msg) { log.error("BG Upload Error: {}", msg); }
         });
     }
-}
\ No newline at end of file
+}
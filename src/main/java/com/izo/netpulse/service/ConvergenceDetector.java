@@ -0,0 +1,85 @@
+package com.izo.netpulse.service;
+
+/**
+ * Decides when a throughput test has gathered enough samples to stop.
+ * <p>The detector is fed the moving throughput estimate of a {@link ThroughputSampler}. The test
+ * is considered converged once the most recent estimates all lie within a relative band
+ * around their mean. Stopping is never allowed before the minimum duration and is always
+ * forced at the maximum duration. A detector whose minimum equals its maximum behaves
+ * like the classic fixed-length test.</p>
+ */
+public final class ConvergenceDetector {
+
+    private static final int STABLE_ESTIMATES = 5;
+
+    private final long minDurationMs;
+    private final long maxDurationMs;
+    private final double band;
+
+    private final double[] estimates = new double[STABLE_ESTIMATES];
+    private int estimateCount;
+    private boolean converged;
+
+    /**
+     * @param minDurationMs The earliest point at which the test may stop.
+     * @param maxDurationMs The point at which the test always stops.
+     * @param band          The allowed relative spread of recent estimates, e.g. {@code 0.05} for ±5%.
+     */
+    public ConvergenceDetector(long minDurationMs, long maxDurationMs, double band) {
+        this.minDurationMs = minDurationMs;
+        this.maxDurationMs = Math.max(minDurationMs, maxDurationMs);
+        this.band = band;
+    }
+
+    /**
+     * Creates a detector that always runs for exactly the given duration.
+     * @param durationMs The fixed test length.
+     * @return A detector that ignores convergence.
+     */
+    public static ConvergenceDetector fixed(long durationMs) {
+        return new ConvergenceDetector(durationMs, durationMs, 0);
+    }
+
+    /**
+     * Feeds the latest moving throughput estimate and re-evaluates convergence.
+     * @param movingAverage The current moving average of the test's samples.
+     */
+    public void addEstimate(double movingAverage) {
+        estimates[estimateCount % STABLE_ESTIMATES] = movingAverage;
+        estimateCount++;
+        converged = estimateCount >= STABLE_ESTIMATES && withinBand();
+    }
+
+    /**
+     * @param elapsedMs      Time since the test started.
+     * @param allowEarlyStop {@code false} while the engine is still ramping up and must not stop early.
+     * @return {@code true} if the maximum duration is reached, or the minimum is reached and the estimate has converged.
+     */
+    public boolean shouldStop(long elapsedMs, boolean allowEarlyStop) {
+        if (elapsedMs >= maxDurationMs) return true;
+        return allowEarlyStop && elapsedMs >= minDurationMs && converged;
+    }
+
+    /** @return {@code true} if the recent estimates currently lie within the confidence band. */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    /** @return The duration after which the test is always stopped. */
+    public long getMaxDurationMs() {
+        return maxDurationMs;
+    }
+
+    private boolean withinBand() {
+        double min = Double.MAX_VALUE;
+        double max = 0;
+        double sum = 0;
+        for (double estimate : estimates) {
+            min = Math.min(min, estimate);
+            max = Math.max(max, estimate);
+            sum += estimate;
+        }
+        double mean = sum / STABLE_ESTIMATES;
+        return mean > 0 && (max - min) / 2 <= band * mean;
+    }
+}
@@ -0,0 +1,79 @@
+package com.izo.netpulse.service;
+
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * Strategies for draining a download response body while keeping an exact byte count.
+ * Selected through {@code netpulse.download.sink} so the paths can be benchmarked against each other.
+ * <p>Every strategy reads from the socket into okio's pooled segments; they differ only in
+ * what happens to the bytes afterwards.</p>
+ */
+public enum DownloadSink {
+
+    /**
+     * Legacy path: copies every byte from the response {@link InputStream} into a 32 KB heap array.
+     */
+    STREAM {
+        @Override
+        public void drain(ResponseBody body, BooleanSupplier keepReading, LongConsumer onBytes) throws IOException {
+            InputStream is = body.byteStream();
+            byte[] buffer = new byte[32768];
+            int read;
+            while (keepReading.getAsBoolean() && (read = is.read(buffer)) != -1) {
+                onBytes.accept(read);
+            }
+        }
+    },
+
+    /**
+     * Reads the body through its NIO channel into a single direct {@link ByteBuffer} that is
+     * reused for the whole stream, keeping the copy off the Java heap.
+     */
+    CHANNEL {
+        @Override
+        public void drain(ResponseBody body, BooleanSupplier keepReading, LongConsumer onBytes) throws IOException {
+            ReadableByteChannel channel = body.source();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            int read;
+            while (keepReading.getAsBoolean() && (read = channel.read(buffer)) != -1) {
+                onBytes.accept(read);
+                buffer.clear();
+            }
+        }
+    },
+
+    /**
+     * Discards okio segments as soon as they are filled from the socket. The bytes are never
+     * copied anywhere, and the released segments go straight back to okio's pool.
+     */
+    SKIP {
+        @Override
+        public void drain(ResponseBody body, BooleanSupplier keepReading, LongConsumer onBytes) throws IOException {
+            BufferedSource source = body.source();
+            Buffer buffered = source.getBuffer();
+            while (keepReading.getAsBoolean() && source.request(1)) {
+                long size = buffered.size();
+                buffered.clear();
+                onBytes.accept(size);
+            }
+        }
+    };
+
+    /**
+     * Consumes the response body until it ends or {@code keepReading} returns {@code false}.
+     * @param body        The response body to drain.
+     * @param keepReading Polled before every read to honour cancellation and the test cutoff.
+     * @param onBytes     Receives the exact number of bytes consumed by each read.
+     * @throws IOException If the underlying connection fails or is cancelled.
+     */
+    public abstract void drain(ResponseBody body, BooleanSupplier keepReading, LongConsumer onBytes) throws IOException;
+}
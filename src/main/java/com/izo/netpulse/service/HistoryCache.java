@@ -0,0 +1,211 @@
+package com.izo.netpulse.service;
+
+import com.izo.netpulse.model.BucketSize;
+import com.izo.netpulse.model.HistoryBuffer;
+import com.izo.netpulse.model.SpeedTestResult;
+import com.izo.netpulse.repository.HistoryBucket;
+import com.izo.netpulse.repository.HistoryPointRepository;
+import com.izo.netpulse.repository.SpeedRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, least-recently-used cache of history query results, keyed by time range and bucket size.
+ * <p>The ranges of the history chart are relative to now, so a cached entry is slid forward instead
+ * of being reloaded: a raw entry drops the results that have left the window from its front, and
+ * an aggregated entry stays valid until the start of the window crosses into the next bucket. Its
+ * first bucket may therefore still count results up to one bucket width older than the window.</p>
+ * <p>Raw ranges are loaded through {@link HistoryPointRepository} and held as primitive
+ * {@link HistoryBuffer}s rather than entities. Committed results are pushed in by the
+ * {@link ResultWriter}: raw entries append them, while aggregated entries are dropped because a
+ * p95 cannot be updated incrementally. Switching back and forth between ranges thus costs an
+ * array copy instead of a query.</p>
+ */
+@Component
+public class HistoryCache {
+
+    private static final LocalDateTime BUCKET_EPOCH = LocalDateTime.of(1970, 1, 5, 0, 0);
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final SpeedRepository repository;
+    private final HistoryPointRepository pointRepository;
+    private final Map<Key, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param repository      The repository aggregated ranges are queried from on a miss.
+     * @param pointRepository The projection raw ranges are queried from on a miss.
+     * @param maxEntries      The number of ranges kept before the least recently used one is evicted.
+     */
+    public HistoryCache(SpeedRepository repository, HistoryPointRepository pointRepository,
+                        @Value("${netpulse.history.cache-entries:16}") int maxEntries) {
+        this.repository = repository;
+        this.pointRepository = pointRepository;
+        int capacity = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the chart points of every result of a range, oldest first.
+     * @param range  A stable name of the range, e.g. "Last Day".
+     * @param cutoff The exclusive lower bound of the window, or {@code null} for the whole history.
+     * @return A copy of the points in the window, owned by the caller.
+     */
+    public synchronized HistoryBuffer getPoints(String range, LocalDateTime cutoff) {
+        LocalDateTime from = cutoff != null ? cutoff : HISTORY_START;
+        Key key = new Key(range, null);
+        Entry entry = entries.get(key);
+        if (entry != null && !from.isBefore(entry.cutoff)) {
+            hits.incrementAndGet();
+            slide(entry, from);
+            return entry.points.copyOfRange(entry.points.start(), entry.points.end());
+        }
+
+        misses.incrementAndGet();
+        HistoryBuffer points = pointRepository.findAfter(from);
+        entries.put(key, Entry.raw(from, points));
+        return points.copyOfRange(points.start(), points.end());
+    }
+
+    /**
+     * Returns only the chart points of results committed after a given one, oldest first: the
+     * incremental counterpart of {@link #getPoints} for a chart that already shows the rest of the
+     * window. A cached range is answered by scanning back from its newest point, a miss by a
+     * primary key range query, so either way the cost follows the number of new results.
+     * @param range   A stable name of the range, e.g. "Last Day".
+     * @param cutoff  The exclusive lower bound of the window, or {@code null} for the whole history.
+     * @param afterId The highest result id already shown.
+     * @return The points of the newer results in the window, owned by the caller.
+     */
+    public synchronized HistoryBuffer getPointsAfter(String range, LocalDateTime cutoff, long afterId) {
+        LocalDateTime from = cutoff != null ? cutoff : HISTORY_START;
+        Entry entry = entries.get(new Key(range, null));
+        if (entry != null && !from.isBefore(entry.cutoff)) {
+            hits.incrementAndGet();
+            slide(entry, from);
+            HistoryBuffer points = entry.points;
+            int first = points.end();
+            while (first > points.start() && points.ids()[first - 1] > afterId) first--;
+            return points.copyOfRange(first, points.end());
+        }
+
+        misses.incrementAndGet();
+        return pointRepository.findAfter(from, afterId);
+    }
+
+    /**
+     * Returns the per-bucket aggregates of a range, oldest bucket first.
+     * @param range      A stable name of the range, e.g. "Last Year".
+     * @param cutoff     The exclusive lower bound of the window, or {@code null} for the whole history.
+     * @param bucketSize The width of the buckets.
+     * @return The aggregated history of the window.
+     */
+    public synchronized List<HistoryBucket> getBuckets(String range, LocalDateTime cutoff, BucketSize bucketSize) {
+        LocalDateTime from = cutoff != null ? cutoff : HISTORY_START;
+        Key key = new Key(range, bucketSize);
+        Entry entry = entries.get(key);
+        if (entry != null && bucketIndex(from, bucketSize) == bucketIndex(entry.cutoff, bucketSize)) {
+            hits.incrementAndGet();
+            return entry.buckets;
+        }
+
+        misses.incrementAndGet();
+        List<HistoryBucket> buckets = List.copyOf(repository.aggregateHistory(from, bucketSize.getSeconds()));
+        entries.put(key, Entry.aggregated(from, buckets));
+        return buckets;
+    }
+
+    /**
+     * Folds newly committed results into the cached ranges. A result already in a raw range is
+     * skipped: a miss on another thread may have loaded it between the commit and this call. A raw
+     * range that would have to take a result older than its newest point is dropped instead, since
+     * points are only appended.
+     * @param saved The results of one committed batch.
+     */
+    public synchronized void addAll(List<SpeedTestResult> saved) {
+        entries.values().removeIf(entry -> entry.points == null);
+        entries.values().removeIf(entry -> {
+            double cutoff = HistoryBuffer.toEpochSeconds(entry.cutoff);
+            for (SpeedTestResult result : saved) {
+                if (result.getTimestamp() == null || result.getId() <= entry.points.maxId()) continue;
+                double epoch = HistoryBuffer.toEpochSeconds(result.getTimestamp());
+                if (epoch <= cutoff) continue;
+                if (epoch < entry.points.lastEpoch()) return true;
+                entry.points.append(epoch, result.getDownloadMbps(), result.getUploadMbps(), result.getId());
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Drops every cached range, e.g. after the retention job or an import rewrote history.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    /** @return The number of lookups answered from the cache. */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /** @return The number of lookups that had to query the database. */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /** @return The number of ranges currently cached. */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Moves the window of a raw entry forward, dropping the points that have left it.
+     */
+    private static void slide(Entry entry, LocalDateTime from) {
+        entry.points.evictThrough(HistoryBuffer.toEpochSeconds(from));
+        entry.cutoff = from;
+    }
+
+    private static long bucketIndex(LocalDateTime time, BucketSize bucketSize) {
+        return Math.floorDiv(Duration.between(BUCKET_EPOCH, time).toSeconds(), bucketSize.getSeconds());
+    }
+
+    /** Cache key: the range name and the bucket size it is charted with, {@code null} for raw results. */
+    private record Key(String range, BucketSize bucketSize) {}
+
+    /** A cached range: either raw chart points or aggregated buckets, and the cutoff they cover. */
+    private static final class Entry {
+        private LocalDateTime cutoff;
+        private final HistoryBuffer points;
+        private final List<HistoryBucket> buckets;
+
+        private Entry(LocalDateTime cutoff, HistoryBuffer points, List<HistoryBucket> buckets) {
+            this.cutoff = cutoff;
+            this.points = points;
+            this.buckets = buckets;
+        }
+
+        private static Entry raw(LocalDateTime cutoff, HistoryBuffer points) {
+            return new Entry(cutoff, points, null);
+        }
+
+        private static Entry aggregated(LocalDateTime cutoff, List<HistoryBucket> buckets) {
+            return new Entry(cutoff, null, buckets);
+        }
+    }
+}
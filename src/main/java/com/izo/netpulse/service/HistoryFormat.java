@@ -0,0 +1,30 @@
+package com.izo.netpulse.service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * File formats supported by {@link HistoryTransferService} for moving history between machines.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum HistoryFormat {
+
+    /** Comma-separated values with a header row, quoted per RFC 4180 where needed. */
+    CSV("csv"),
+
+    /** Newline-delimited JSON: one flat object per result, {@code null} fields omitted. */
+    NDJSON("ndjson");
+
+    /** The file extension without the dot. */
+    private final String extension;
+
+    /**
+     * @param fileName A file name such as {@code history.ndjson}.
+     * @return The format matching the extension, defaulting to {@link #CSV}.
+     */
+    public static HistoryFormat forFileName(String fileName) {
+        String lower = fileName.toLowerCase();
+        return lower.endsWith(".ndjson") || lower.endsWith(".jsonl") ? NDJSON : CSV;
+    }
+}
@@ -0,0 +1,510 @@
+package com.izo.netpulse.service;
+
+import com.izo.netpulse.model.BufferbloatGrade;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Streams the result history out to CSV or NDJSON and bulk-loads it back in.
+ * <p>Export runs a single forward-only, read-only query ordered by primary key with a fetch
+ * size, and writes every row as soon as it is read, so the table never sits in memory and the
+ * persistence context is never involved. Import parses the input one record at a time and inserts
+ * rows through JDBC batches, one transaction per batch. The batched statement omits the id, so H2
+ * assigns identity values without the per-row generated-key round trip JPA needs for
+ * {@code GenerationType.IDENTITY}.</p>
+ * <p>Both formats use the entity property names as field names and ISO-8601 local timestamps.
+ * Ids are not exported: they are local to one database, and imported rows get fresh ones.
+ * Sample traces stay on the machine that recorded them.</p>
+ */
+@Slf4j
+@Service
+public class HistoryTransferService {
+
+    private static final List<Field> FIELDS = List.of(
+            new Field("timestamp", "TIMESTAMP", Kind.TIMESTAMP),
+            new Field("downloadMbps", "DOWNLOAD_MBPS", Kind.DOUBLE),
+            new Field("uploadMbps", "UPLOAD_MBPS", Kind.DOUBLE),
+            new Field("downloadPeakMbps", "DOWNLOAD_PEAK_MBPS", Kind.DOUBLE),
+            new Field("uploadPeakMbps", "UPLOAD_PEAK_MBPS", Kind.DOUBLE),
+            new Field("downloadRampUpMs", "DOWNLOAD_RAMP_UP_MS", Kind.LONG),
+            new Field("uploadRampUpMs", "UPLOAD_RAMP_UP_MS", Kind.LONG),
+            new Field("downloadHistogram", "DOWNLOAD_HISTOGRAM", Kind.STRING),
+            new Field("uploadHistogram", "UPLOAD_HISTOGRAM", Kind.STRING),
+            new Field("latencyMinMs", "LATENCY_MIN_MS", Kind.DOUBLE),
+            new Field("latencyAvgMs", "LATENCY_AVG_MS", Kind.DOUBLE),
+            new Field("latencyP95Ms", "LATENCYP95MS", Kind.DOUBLE),
+            new Field("jitterMs", "JITTER_MS", Kind.DOUBLE),
+            new Field("probeLossPercent", "PROBE_LOSS_PERCENT", Kind.DOUBLE),
+            new Field("dnsMs", "DNS_MS", Kind.DOUBLE),
+            new Field("connectMs", "CONNECT_MS", Kind.DOUBLE),
+            new Field("tlsMs", "TLS_MS", Kind.DOUBLE),
+            new Field("downloadLatencyMs", "DOWNLOAD_LATENCY_MS", Kind.DOUBLE),
+            new Field("downloadJitterMs", "DOWNLOAD_JITTER_MS", Kind.DOUBLE),
+            new Field("uploadLatencyMs", "UPLOAD_LATENCY_MS", Kind.DOUBLE),
+            new Field("uploadJitterMs", "UPLOAD_JITTER_MS", Kind.DOUBLE),
+            new Field("bufferbloatGrade", "BUFFERBLOAT_GRADE", Kind.GRADE),
+            new Field("downloadBytes", "DOWNLOAD_BYTES", Kind.LONG),
+            new Field("uploadBytes", "UPLOAD_BYTES", Kind.LONG),
+            new Field("downloadDurationMs", "DOWNLOAD_DURATION_MS", Kind.LONG),
+            new Field("uploadDurationMs", "UPLOAD_DURATION_MS", Kind.LONG),
+            new Field("downloadStreams", "DOWNLOAD_STREAMS", Kind.INT),
+            new Field("uploadStreams", "UPLOAD_STREAMS", Kind.INT),
+            new Field("backend", "BACKEND", Kind.STRING),
+            new Field("serverAddress", "SERVER_ADDRESS", Kind.STRING),
+            new Field("networkInterface", "NETWORK_INTERFACE", Kind.STRING)
+    );
+
+    private static final Map<String, Integer> FIELD_INDEX = new HashMap<>();
+    static {
+        for (int i = 0; i < FIELDS.size(); i++) FIELD_INDEX.put(FIELDS.get(i).key(), i);
+    }
+
+    private static final String COLUMNS = FIELDS.stream().map(Field::column).collect(Collectors.joining(", "));
+    private static final String SELECT_SQL = "SELECT " + COLUMNS + " FROM SPEED_TEST_RESULT ORDER BY ID";
+    private static final String INSERT_SQL = "INSERT INTO SPEED_TEST_RESULT (" + COLUMNS + ") VALUES ("
+            + FIELDS.stream().map(field -> "?").collect(Collectors.joining(", ")) + ")";
+    private static final int[] SQL_TYPES = FIELDS.stream().mapToInt(field -> field.kind().sqlType).toArray();
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactions;
+    private final HistoryCache historyCache;
+    private final int fetchSize;
+    private final int batchSize;
+
+    /**
+     * @param jdbc         The template used for the export cursor and the import batches.
+     * @param transactions Commits each import batch as one transaction.
+     * @param historyCache The cache invalidated after an import.
+     * @param fetchSize    The number of rows the export cursor fetches per round trip.
+     * @param batchSize    The number of rows inserted per JDBC batch and transaction.
+     */
+    public HistoryTransferService(JdbcTemplate jdbc, TransactionTemplate transactions, HistoryCache historyCache,
+                                  @Value("${netpulse.transfer.fetch-size:1000}") int fetchSize,
+                                  @Value("${netpulse.transfer.batch-size:1000}") int batchSize) {
+        this.jdbc = jdbc;
+        this.transactions = transactions;
+        this.historyCache = historyCache;
+        this.fetchSize = Math.max(1, fetchSize);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Writes the whole history, oldest row first.
+     * @param format The output format.
+     * @param out    The destination; buffered by the caller, and not closed here.
+     * @return The number of rows written and how long it took.
+     * @throws IOException If writing fails.
+     */
+    public TransferStats export(HistoryFormat format, Writer out) throws IOException {
+        long start = System.nanoTime();
+        long[] rows = {0};
+        StringBuilder line = new StringBuilder(512);
+        if (format == HistoryFormat.CSV) {
+            out.write(FIELDS.stream().map(Field::key).collect(Collectors.joining(",")));
+            out.write('\n');
+        }
+
+        try {
+            jdbc.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(SELECT_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                return statement;
+            }, resultSet -> {
+                line.setLength(0);
+                if (format == HistoryFormat.CSV) appendCsv(resultSet, line); else appendJson(resultSet, line);
+                try {
+                    out.append(line).append('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+
+        TransferStats stats = new TransferStats(rows[0], 0, (System.nanoTime() - start) / 1_000_000);
+        log.info("Exported {} result(s) as {} in {} ms", stats.rows(), format, stats.elapsedMs());
+        return stats;
+    }
+
+    /**
+     * Appends the rows of an export to the history. Records that cannot be parsed are skipped.
+     * @param format The input format.
+     * @param in     The source, read to the end and not closed here.
+     * @return The number of rows imported and skipped, and how long it took.
+     * @throws IOException If reading fails.
+     */
+    public TransferStats importFrom(HistoryFormat format, Reader in) throws IOException {
+        long start = System.nanoTime();
+        BufferedReader reader = in instanceof BufferedReader buffered ? buffered : new BufferedReader(in, 64 * 1024);
+        RecordSource source = format == HistoryFormat.CSV ? new CsvSource(reader) : new JsonSource(reader);
+
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        long imported = 0;
+        long skipped = 0;
+        String[] values;
+        while ((values = source.next()) != null) {
+            try {
+                batch.add(toRow(values));
+            } catch (RuntimeException e) {
+                if (skipped++ == 0) log.warn("Skipping unparseable record: {}", e.getMessage());
+                continue;
+            }
+            if (batch.size() == batchSize) {
+                imported += insert(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) imported += insert(batch);
+        historyCache.invalidateAll();
+
+        TransferStats stats = new TransferStats(imported, skipped, (System.nanoTime() - start) / 1_000_000);
+        log.info("Imported {} result(s) from {} in {} ms ({} rows/s), skipped {}",
+                stats.rows(), format, stats.elapsedMs(), Math.round(stats.rowsPerSecond()), skipped);
+        return stats;
+    }
+
+    /**
+     * Inserts one batch in its own transaction.
+     * @return The number of rows inserted.
+     */
+    private int insert(List<Object[]> batch) {
+        transactions.executeWithoutResult(status -> jdbc.batchUpdate(INSERT_SQL, batch, SQL_TYPES));
+        return batch.size();
+    }
+
+    /**
+     * Converts the textual values of one record into typed statement arguments.
+     * @throws IllegalArgumentException If the timestamp is missing or a value does not parse as its field type.
+     */
+    private static Object[] toRow(String[] values) {
+        // A row without a time would never show up in any range, rollup or retention pass
+        if (values[0] == null || values[0].isEmpty()) throw new IllegalArgumentException("Missing timestamp");
+        Object[] row = new Object[FIELDS.size()];
+        for (int i = 0; i < row.length; i++) {
+            String value = values[i];
+            if (value == null || value.isEmpty()) continue;
+            row[i] = switch (FIELDS.get(i).kind()) {
+                case TIMESTAMP -> Timestamp.valueOf(LocalDateTime.parse(value));
+                case DOUBLE -> Double.valueOf(value);
+                case LONG -> Long.valueOf(value);
+                case INT -> Integer.valueOf(value);
+                case GRADE -> BufferbloatGrade.valueOf(value).name();
+                case STRING -> value;
+            };
+        }
+        // The two headline speeds are mandatory columns
+        if (row[1] == null) row[1] = 0.0;
+        if (row[2] == null) row[2] = 0.0;
+        return row;
+    }
+
+    /**
+     * Reads one column of the current row as text, or {@code null} for SQL NULL.
+     */
+    private static String read(ResultSet resultSet, int index) throws SQLException {
+        Field field = FIELDS.get(index);
+        int column = index + 1;
+        return switch (field.kind()) {
+            case TIMESTAMP -> {
+                LocalDateTime time = resultSet.getObject(column, LocalDateTime.class);
+                yield time == null ? null : time.toString();
+            }
+            case DOUBLE -> {
+                double value = resultSet.getDouble(column);
+                yield resultSet.wasNull() || !Double.isFinite(value) ? null : Double.toString(value);
+            }
+            case LONG -> {
+                long value = resultSet.getLong(column);
+                yield resultSet.wasNull() ? null : Long.toString(value);
+            }
+            case INT -> {
+                int value = resultSet.getInt(column);
+                yield resultSet.wasNull() ? null : Integer.toString(value);
+            }
+            case GRADE, STRING -> resultSet.getString(column);
+        };
+    }
+
+    private static void appendCsv(ResultSet resultSet, StringBuilder line) throws SQLException {
+        for (int i = 0; i < FIELDS.size(); i++) {
+            if (i > 0) line.append(',');
+            String value = read(resultSet, i);
+            if (value == null) continue;
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                line.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(value);
+            }
+        }
+    }
+
+    private static void appendJson(ResultSet resultSet, StringBuilder line) throws SQLException {
+        line.append('{');
+        boolean first = true;
+        for (int i = 0; i < FIELDS.size(); i++) {
+            String value = read(resultSet, i);
+            if (value == null) continue;
+            if (!first) line.append(',');
+            first = false;
+            line.append('"').append(FIELDS.get(i).key()).append("\":");
+            Kind kind = FIELDS.get(i).kind();
+            if (kind == Kind.DOUBLE || kind == Kind.LONG || kind == Kind.INT) {
+                line.append(value);
+            } else {
+                appendJsonString(line, value);
+            }
+        }
+        line.append('}');
+    }
+
+    private static void appendJsonString(StringBuilder line, String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                default -> {
+                    if (c < 0x20) line.append(String.format("\\u%04x", (int) c)); else line.append(c);
+                }
+            }
+        }
+        line.append('"');
+    }
+
+    /**
+     * Outcome of an export or import.
+     * @param rows      The number of rows written or inserted.
+     * @param skipped   The number of input records that could not be parsed.
+     * @param elapsedMs How long the transfer took.
+     */
+    public record TransferStats(long rows, long skipped, long elapsedMs) {
+
+        /** @return The throughput of the transfer. */
+        public double rowsPerSecond() {
+            return rows * 1000.0 / Math.max(1, elapsedMs);
+        }
+    }
+
+    /** How a field is stored and parsed. */
+    private enum Kind {
+        TIMESTAMP(Types.TIMESTAMP), DOUBLE(Types.DOUBLE), LONG(Types.BIGINT), INT(Types.INTEGER),
+        GRADE(Types.VARCHAR), STRING(Types.VARCHAR);
+
+        private final int sqlType;
+
+        Kind(int sqlType) {
+            this.sqlType = sqlType;
+        }
+    }
+
+    /** An exported field: its name in the files, its column and its type. */
+    private record Field(String key, String column, Kind kind) {}
+
+    /** Yields the values of one record at a time, indexed like {@link #FIELDS}. */
+    private interface RecordSource {
+        /** @return The next record, or {@code null} at the end of the input. */
+        String[] next() throws IOException;
+    }
+
+    /**
+     * RFC 4180 reader: the header row maps columns to fields by name, unknown columns are
+     * ignored, and quoted values may contain commas, doubled quotes and line breaks.
+     */
+    private static final class CsvSource implements RecordSource {
+        private final BufferedReader reader;
+        private final List<String> cells = new ArrayList<>();
+        private final StringBuilder cell = new StringBuilder();
+        private int[] fieldOfColumn;
+
+        private CsvSource(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public String[] next() throws IOException {
+            if (fieldOfColumn == null) {
+                if (!readRecord()) return null;
+                fieldOfColumn = cells.stream().mapToInt(name -> FIELD_INDEX.getOrDefault(name.trim(), -1)).toArray();
+            }
+            while (readRecord()) {
+                if (cells.size() == 1 && cells.getFirst().isEmpty()) continue;
+                String[] values = new String[FIELDS.size()];
+                for (int i = 0; i < cells.size() && i < fieldOfColumn.length; i++) {
+                    if (fieldOfColumn[i] >= 0) values[fieldOfColumn[i]] = cells.get(i);
+                }
+                return values;
+            }
+            return null;
+        }
+
+        /**
+         * Reads the cells of the next record into {@link #cells}.
+         * @return {@code false} at the end of the input.
+         */
+        private boolean readRecord() throws IOException {
+            cells.clear();
+            cell.setLength(0);
+            boolean quoted = false;
+            boolean any = false;
+            int c;
+            while ((c = reader.read()) != -1) {
+                any = true;
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            cell.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        cell.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    cells.add(cell.toString());
+                    cell.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    cell.append((char) c);
+                }
+            }
+            if (!any) return false;
+            cells.add(cell.toString());
+            return true;
+        }
+    }
+
+    /**
+     * Line-based reader of flat JSON objects. Unknown keys are ignored; a line holding anything
+     * other than a flat object of strings, numbers, booleans and nulls is rejected.
+     */
+    private static final class JsonSource implements RecordSource {
+        private final BufferedReader reader;
+        private String line;
+        private int pos;
+
+        private JsonSource(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public String[] next() throws IOException {
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                pos = 0;
+                String[] values = new String[FIELDS.size()];
+                try {
+                    parseObject(values);
+                } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                    // Mark the record as unparseable; toRow rejects it
+                    Arrays.fill(values, null);
+                    values[0] = "invalid";
+                }
+                return values;
+            }
+            return null;
+        }
+
+        private void parseObject(String[] values) {
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') return;
+            while (true) {
+                skipWhitespace();
+                String key = parseString();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                String value = peek() == '"' ? parseString() : parseLiteral();
+                Integer field = FIELD_INDEX.get(key);
+                if (field != null) values[field] = value;
+                skipWhitespace();
+                char c = line.charAt(pos++);
+                if (c == '}') return;
+                if (c != ',') throw new IllegalArgumentException("Expected ',' or '}' at " + (pos - 1));
+            }
+        }
+
+        private String parseString() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                char c = line.charAt(pos++);
+                if (c == '"') return value.toString();
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                char escaped = line.charAt(pos++);
+                switch (escaped) {
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'u' -> {
+                        value.append((char) Integer.parseInt(line.substring(pos, pos + 4), 16));
+                        pos += 4;
+                    }
+                    default -> value.append(escaped);
+                }
+            }
+        }
+
+        /** Parses a number, {@code true}, {@code false} or {@code null}; the latter yields {@code null}. */
+        private String parseLiteral() {
+            int start = pos;
+            while (pos < line.length() && ",}] \t".indexOf(line.charAt(pos)) < 0) pos++;
+            String literal = line.substring(start, pos);
+            if (literal.isEmpty() || literal.charAt(0) == '{' || literal.charAt(0) == '[') {
+                throw new IllegalArgumentException("Unsupported value at " + start);
+            }
+            return literal.equals("null") ? null : literal;
+        }
+
+        private void expect(char expected) {
+            if (line.charAt(pos++) != expected) throw new IllegalArgumentException("Expected '" + expected + "' at " + (pos - 1));
+        }
+
+        private char peek() {
+            return line.charAt(pos);
+        }
+
+        private void skipWhitespace() {
+            while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) pos++;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.izo.netpulse.service;
+
+import lombok.Value;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Phase breakdown of a single latency probe, as observed through OkHttp's {@link okhttp3.EventListener}.
+ * <p>Handshake phases are {@code 0} when the probe reused a pooled connection, so only the first
+ * probe of a session (or one after the pool evicted its connection) pays for DNS, TCP and TLS.</p>
+ */
+@Value
+public class LatencyProbe {
+
+    /** Time spent resolving the host name, in milliseconds. */
+    double dnsMs;
+
+    /** Time spent on the TCP handshake, excluding TLS, in milliseconds. */
+    double connectMs;
+
+    /** Time spent on the TLS handshake, in milliseconds. */
+    double tlsMs;
+
+    /** Time from sending the request headers to receiving the response headers, in milliseconds. */
+    double ttfbMs;
+
+    /** Wall time of the whole call, in milliseconds. */
+    double totalMs;
+
+    /** Whether the probe ran on a pooled connection and skipped every handshake. */
+    boolean reusedConnection;
+
+    /** The local end of the connection that carried the probe, or {@code null} if unknown. */
+    InetSocketAddress localAddress;
+
+    /** The server end of the connection that carried the probe, or {@code null} if unknown. */
+    InetSocketAddress serverAddress;
+}
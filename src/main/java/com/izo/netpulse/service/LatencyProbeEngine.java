@@ -0,0 +1,225 @@
+package com.izo.netpulse.service;
+
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Latency measurement engine that times every phase of a probe request separately.
+ * <p>Each probe carries its own {@link PhaseTimer} as a request tag; the client's
+ * {@link EventListener.Factory} hands that timer to OkHttp, which reports DNS, connect, TLS and
+ * header events with {@link System#nanoTime()} precision. Because the probes share a connection
+ * pool, only the first probe pays for the handshakes and the rest measure the pure round trip.</p>
+ * <p>Probes are paced at a fixed rate against absolute deadlines, so a slow probe does not push
+ * the following ones back.</p>
+ */
+@Slf4j
+@Component
+public class LatencyProbeEngine {
+
+    private static final double NANOS_PER_MS = 1_000_000.0;
+
+    private final int probeCount;
+    private final long probeIntervalNanos;
+    private final long loadedProbeIntervalNanos;
+    private final OkHttpClient client;
+
+    /**
+     * @param probeCount       Number of probes in an idle latency measurement.
+     * @param probeIntervalMs  Time between the start of consecutive probes.
+     * @param loadedProbeIntervalMs  Time between probes while a throughput test saturates the link.
+     * @param probeTimeoutMs   Time after which an unanswered probe counts as lost.
+     */
+    public LatencyProbeEngine(@Value("${netpulse.latency.probes:10}") int probeCount,
+                              @Value("${netpulse.latency.probe-interval-ms:100}") long probeIntervalMs,
+                              @Value("${netpulse.latency.loaded-probe-interval-ms:250}") long loadedProbeIntervalMs,
+                              @Value("${netpulse.latency.probe-timeout-ms:2000}") long probeTimeoutMs) {
+        this.probeCount = Math.max(1, probeCount);
+        this.probeIntervalNanos = Math.max(0, probeIntervalMs) * 1_000_000L;
+        this.loadedProbeIntervalNanos = Math.max(0, loadedProbeIntervalMs) * 1_000_000L;
+        this.client = new OkHttpClient.Builder()
+                .protocols(List.of(Protocol.HTTP_1_1))
+                .callTimeout(probeTimeoutMs, TimeUnit.MILLISECONDS)
+                .eventListenerFactory(call -> {
+                    PhaseTimer timer = call.request().tag(PhaseTimer.class);
+                    return timer != null ? timer : EventListener.NONE;
+                })
+                .build();
+    }
+
+    /**
+     * Runs the configured number of probes at the configured rate.
+     * @param request     The lightweight request to probe with.
+     * @param keepRunning Polled before every probe to honour cancellation.
+     * @return The summary of the probe series.
+     */
+    public LatencyResult measure(Request request, BooleanSupplier keepRunning) {
+        LatencyRecorder recorder = new LatencyRecorder();
+        long nextProbe = System.nanoTime();
+        for (int i = 0; i < probeCount && keepRunning.getAsBoolean(); i++) {
+            awaitDeadline(nextProbe);
+            nextProbe += probeIntervalNanos;
+            LatencyProbe probe = probe(request);
+            if (probe != null) recorder.record(probe); else recorder.recordLoss();
+        }
+        return recorder.toResult();
+    }
+
+    /**
+     * Probes continuously at the loaded-latency rate for as long as a throughput test is running.
+     * <p>The running summary is published after every probe, so the caller can read the latest
+     * figures as soon as the load stops without waiting for a probe that is still in flight.</p>
+     * @param request     The lightweight request to probe with.
+     * @param underLoad   Polled before every probe; probing stops once it returns {@code false}.
+     * @param onProbe     Receives the updated summary after every answered or lost probe.
+     */
+    public void probeWhile(Request request, BooleanSupplier underLoad, Consumer<LatencyResult> onProbe) {
+        LatencyRecorder recorder = new LatencyRecorder();
+        long nextProbe = System.nanoTime();
+        while (underLoad.getAsBoolean() && !Thread.currentThread().isInterrupted()) {
+            awaitDeadline(nextProbe);
+            nextProbe += loadedProbeIntervalNanos;
+            LatencyProbe probe = probe(request);
+            if (!underLoad.getAsBoolean()) break;
+            if (probe != null) recorder.record(probe); else recorder.recordLoss();
+            onProbe.accept(recorder.toResult());
+        }
+    }
+
+    /**
+     * Executes a single probe.
+     * @param request The request to probe with.
+     * @return The phase breakdown, or {@code null} if the probe failed, timed out or was rejected.
+     */
+    public LatencyProbe probe(Request request) {
+        PhaseTimer timer = new PhaseTimer();
+        Call call = client.newCall(request.newBuilder().tag(PhaseTimer.class, timer).build());
+        try (Response response = call.execute()) {
+            if (!response.isSuccessful()) return null;
+            return timer.toProbe();
+        } catch (IOException e) {
+            log.debug("Latency probe lost: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Parks the calling thread until the given {@link System#nanoTime()} deadline.
+     */
+    private static void awaitDeadline(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /**
+     * Per-call listener that timestamps the connection and exchange phases of one probe.
+     * All callbacks for a call arrive on the thread executing it.
+     */
+    static final class PhaseTimer extends EventListener {
+        private long callStart;
+        private long dnsStart;
+        private long dnsEnd;
+        private long connectStart;
+        private long connectEnd;
+        private long secureStart;
+        private long secureEnd;
+        private long requestStart;
+        private long responseStart;
+        private InetSocketAddress localAddress;
+        private InetSocketAddress serverAddress;
+
+        @Override
+        public void callStart(Call call) {
+            callStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            dnsEnd = System.nanoTime();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connectStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            secureStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            secureEnd = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            connectEnd = System.nanoTime();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            SocketAddress local = connection.socket().getLocalSocketAddress();
+            if (local instanceof InetSocketAddress address) localAddress = address;
+            serverAddress = connection.route().socketAddress();
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            requestStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            responseStart = System.nanoTime();
+        }
+
+        /**
+         * @return The phase breakdown of the finished call. OkHttp reports the TLS handshake
+         * inside the connect phase, so it is subtracted to leave the bare TCP handshake.
+         */
+        LatencyProbe toProbe() {
+            double tls = span(secureStart, secureEnd);
+            return new LatencyProbe(
+                    span(dnsStart, dnsEnd),
+                    Math.max(0.0, span(connectStart, connectEnd) - tls),
+                    tls,
+                    span(requestStart, responseStart),
+                    span(callStart, System.nanoTime()),
+                    connectStart == 0,
+                    localAddress,
+                    serverAddress);
+        }
+
+        private static double span(long start, long end) {
+            return start == 0 || end < start ? 0.0 : (end - start) / NANOS_PER_MS;
+        }
+    }
+}
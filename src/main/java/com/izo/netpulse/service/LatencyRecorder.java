@@ -0,0 +1,93 @@
+package com.izo.netpulse.service;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+/**
+ * Accumulates latency probes into a {@link LatencyResult}.
+ * <p>Round trips are kept in a growable primitive array so the exact p95 can be taken at the
+ * end; a probe series rarely exceeds a few hundred samples. Instances are confined to the
+ * thread that runs the probes.</p>
+ */
+public final class LatencyRecorder {
+
+    private double[] roundTrips = new double[16];
+    private int answered;
+    private int sent;
+    private double lastRoundTrip = Double.NaN;
+    private double jitterSum;
+    private int freshConnections;
+    private double dnsSum;
+    private double connectSum;
+    private double tlsSum;
+    private InetSocketAddress localAddress;
+    private InetSocketAddress serverAddress;
+
+    /**
+     * Records an answered probe.
+     * @param probe The phase breakdown of the probe.
+     */
+    public void record(LatencyProbe probe) {
+        sent++;
+        if (answered == roundTrips.length) roundTrips = Arrays.copyOf(roundTrips, answered * 2);
+        double rtt = probe.getTtfbMs();
+        roundTrips[answered++] = rtt;
+
+        if (!Double.isNaN(lastRoundTrip)) jitterSum += Math.abs(rtt - lastRoundTrip);
+        lastRoundTrip = rtt;
+
+        if (probe.getLocalAddress() != null) localAddress = probe.getLocalAddress();
+        if (probe.getServerAddress() != null) serverAddress = probe.getServerAddress();
+
+        if (!probe.isReusedConnection()) {
+            freshConnections++;
+            dnsSum += probe.getDnsMs();
+            connectSum += probe.getConnectMs();
+            tlsSum += probe.getTlsMs();
+        }
+    }
+
+    /**
+     * Records a probe that failed or timed out.
+     */
+    public void recordLoss() {
+        sent++;
+    }
+
+    /** @return The number of probes that were answered. */
+    public int getAnswered() {
+        return answered;
+    }
+
+    /** @return The number of probes sent, answered or not. */
+    public int getSent() {
+        return sent;
+    }
+
+    /**
+     * Builds the summary of every probe recorded so far.
+     * @return The latency summary; all round-trip figures are {@code 0} if no probe was answered.
+     */
+    public LatencyResult toResult() {
+        double[] sorted = Arrays.copyOf(roundTrips, answered);
+        Arrays.sort(sorted);
+
+        double sum = 0;
+        for (double rtt : sorted) sum += rtt;
+
+        return LatencyResult.builder()
+                .minMs(answered == 0 ? 0.0 : sorted[0])
+                .avgMs(answered == 0 ? 0.0 : sum / answered)
+                .p95Ms(answered == 0 ? 0.0 : sorted[(int) Math.ceil(0.95 * answered) - 1])
+                .jitterMs(answered < 2 ? 0.0 : jitterSum / (answered - 1))
+                .lossPercent(sent == 0 ? 0.0 : 100.0 * (sent - answered) / sent)
+                .probesSent(sent)
+                .dnsMs(freshConnections == 0 ? 0.0 : dnsSum / freshConnections)
+                .connectMs(freshConnections == 0 ? 0.0 : connectSum / freshConnections)
+                .tlsMs(freshConnections == 0 ? 0.0 : tlsSum / freshConnections)
+                .ttfbMs(answered == 0 ? 0.0 : sum / answered)
+                .localAddress(localAddress)
+                .serverAddress(serverAddress)
+                .build();
+    }
+}
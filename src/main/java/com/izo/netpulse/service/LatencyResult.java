@@ -0,0 +1,52 @@
+package com.izo.netpulse.service;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Summary of a series of latency probes. Round-trip figures are based on time-to-first-byte,
+ * which excludes connection setup, while the handshake phases are averaged over the probes
+ * that actually opened a new connection.
+ */
+@Value
+@Builder
+public class LatencyResult {
+
+    /** The fastest round trip, in milliseconds. */
+    double minMs;
+
+    /** The mean round trip, in milliseconds. */
+    double avgMs;
+
+    /** The 95th percentile round trip, in milliseconds. */
+    double p95Ms;
+
+    /** The mean absolute difference between consecutive round trips, in milliseconds. */
+    double jitterMs;
+
+    /** The share of probes that failed or timed out, in percent. */
+    double lossPercent;
+
+    /** The number of probes sent. */
+    int probesSent;
+
+    /** Mean DNS resolution time of probes that opened a connection, in milliseconds. */
+    double dnsMs;
+
+    /** Mean TCP handshake time of probes that opened a connection, in milliseconds. */
+    double connectMs;
+
+    /** Mean TLS handshake time of probes that opened a connection, in milliseconds. */
+    double tlsMs;
+
+    /** Mean time-to-first-byte across all answered probes, in milliseconds. */
+    double ttfbMs;
+
+    /** The local address the probes left from, identifying the network interface, or {@code null}. */
+    InetSocketAddress localAddress;
+
+    /** The server address the probes reached, or {@code null}. */
+    InetSocketAddress serverAddress;
+}
@@ -0,0 +1,145 @@
+package com.izo.netpulse.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Managed executor that runs every network operation on its own named virtual thread.
+ * <p>Replaces ad-hoc {@code new Thread(...)} calls so that concurrent work is bounded,
+ * identifiable in thread dumps, counted, and cancellable as a group through {@link TaskGroup}.
+ * All running tasks are interrupted when the Spring context shuts down.</p>
+ */
+@Slf4j
+@Component
+public class NetworkTaskExecutor {
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("netpulse-task-", 0).factory());
+
+    private final AtomicInteger activeTasks = new AtomicInteger(0);
+    private final Semaphore permits;
+
+    /**
+     * Creates the executor with a cap on concurrently running tasks.
+     * Tasks beyond the cap park cheaply on their virtual thread until a permit frees up.
+     * @param maxConcurrentTasks The maximum number of tasks allowed to run at once.
+     */
+    public NetworkTaskExecutor(@Value("${netpulse.executor.max-concurrent-tasks:512}") int maxConcurrentTasks) {
+        this.permits = new Semaphore(Math.max(1, maxConcurrentTasks));
+    }
+
+    /**
+     * Runs a task on a new virtual thread named after the operation.
+     * @param name A short label for the task, used as the thread name (e.g. "download-stream-2").
+     * @param task The work to execute.
+     * @return A future that can be used to cancel (interrupt) the task.
+     */
+    public Future<?> submit(String name, Runnable task) {
+        return executor.submit(() -> {
+            Thread.currentThread().setName("netpulse-" + name);
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            activeTasks.incrementAndGet();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Task '{}' failed", name, e);
+            } finally {
+                activeTasks.decrementAndGet();
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * Opens a group whose tasks can be cancelled together, e.g. every stream of one speed test.
+     * @param name The prefix applied to the thread name of every task in the group.
+     * @return A new, empty task group.
+     */
+    public TaskGroup newGroup(String name) {
+        return new TaskGroup(name);
+    }
+
+    /**
+     * @return The number of tasks currently executing (excluding those waiting for a permit).
+     */
+    public int getActiveTaskCount() {
+        return activeTasks.get();
+    }
+
+    /**
+     * Interrupts every running task and waits briefly for them to exit when the context closes.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(2, TimeUnit.SECONDS)) {
+                log.warn("{} network task(s) still running at shutdown", activeTasks.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A set of related tasks that share a lifetime. Cancelling the group interrupts every
+     * task it has started and rejects any further submissions.
+     */
+    public final class TaskGroup {
+        private final String name;
+        private final Set<Future<?>> tasks = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled = false;
+
+        private TaskGroup(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Runs a task as part of this group.
+         * @param taskName A label appended to the group name for the thread name.
+         * @param task     The work to execute.
+         * @return {@code true} if the task was started, {@code false} if the group is already cancelled.
+         */
+        public boolean submit(String taskName, Runnable task) {
+            if (cancelled) return false;
+            tasks.removeIf(Future::isDone);
+            tasks.add(NetworkTaskExecutor.this.submit(name + "-" + taskName, task));
+            if (cancelled) cancel();
+            return true;
+        }
+
+        /**
+         * Interrupts every task in the group and prevents new ones from starting.
+         */
+        public void cancel() {
+            cancelled = true;
+            tasks.forEach(task -> task.cancel(true));
+        }
+
+        /** @return {@code true} once {@link #cancel()} has been called. */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /** @return The number of tasks in the group that have not finished yet. */
+        public int getActiveTaskCount() {
+            return (int) tasks.stream().filter(task -> !task.isDone()).count();
+        }
+    }
+}
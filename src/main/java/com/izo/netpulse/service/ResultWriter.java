@@ -0,0 +1,239 @@
+package com.izo.netpulse.service;
+
+import com.izo.netpulse.model.SampleTrace;
+import com.izo.netpulse.model.SpeedTestResult;
+import com.izo.netpulse.model.TransferDirection;
+import com.izo.netpulse.repository.SpeedRepository;
+import com.izo.netpulse.repository.TraceStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind persistence for speed test results.
+ * <p>Callers hand results to a bounded queue and return immediately; a single dedicated writer
+ * thread drains whatever has accumulated and inserts it as one batch in one transaction, so test
+ * threads, the scheduler and the JavaFX thread never wait on H2 disk I/O. Each submission returns
+ * a future that completes once its row is committed, for callers that want to react to it.</p>
+ * <p>The raw sample traces of a result are appended to the {@link TraceStore} right after its
+ * batch commits, since their index is keyed by the generated result id, and the committed rows
+ * are folded into the {@link HistoryCache} before any future completes.</p>
+ * <p>If the queue is full the result is rejected rather than blocking the caller. On shutdown the
+ * queue stops accepting results and everything already queued is written before the context closes.
+ * The writer depends on the {@link RetentionService} so that its shutdown compaction of the
+ * database runs only after this queue has drained.</p>
+ */
+@Slf4j
+@Component
+@DependsOn("retentionService")
+public class ResultWriter {
+
+    private final SpeedRepository repository;
+    private final TraceStore traceStore;
+    private final HistoryCache historyCache;
+    private final BlockingQueue<PendingWrite> queue;
+    private final int batchSize;
+    private final Thread writer;
+    private volatile boolean accepting = true;
+
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+
+    /**
+     * Creates the queue and starts the writer thread.
+     * @param repository    The repository the batches are saved through.
+     * @param traceStore    The store receiving the sample traces of saved results.
+     * @param historyCache  The cache that committed results are folded into.
+     * @param queueCapacity The maximum number of results waiting to be written.
+     * @param batchSize     The maximum number of results inserted in one transaction.
+     */
+    public ResultWriter(SpeedRepository repository, TraceStore traceStore, HistoryCache historyCache,
+                        @Value("${netpulse.persistence.queue-capacity:1024}") int queueCapacity,
+                        @Value("${netpulse.persistence.batch-size:64}") int batchSize) {
+        this.repository = repository;
+        this.traceStore = traceStore;
+        this.historyCache = historyCache;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.writer = Thread.ofPlatform().name("netpulse-result-writer").daemon().start(this::writeLoop);
+    }
+
+    /**
+     * Queues a result for insertion without waiting for the database.
+     * @param result The result to persist.
+     * @return A future completed with the saved entity once its batch is committed, or completed
+     *         exceptionally with a {@link RejectedExecutionException} if the queue is full or closed.
+     */
+    public CompletableFuture<SpeedTestResult> submit(SpeedTestResult result) {
+        return submit(result, null, null);
+    }
+
+    /**
+     * Queues a result together with the raw samples of its two phases.
+     * @param result   The result to persist.
+     * @param download The download samples, or {@code null}.
+     * @param upload   The upload samples, or {@code null}.
+     * @return A future completed with the saved entity once its batch is committed and its traces are stored.
+     */
+    public CompletableFuture<SpeedTestResult> submit(SpeedTestResult result, SampleTrace download, SampleTrace upload) {
+        PendingWrite write = new PendingWrite(result, download, upload, new CompletableFuture<>());
+        if (!accepting || !queue.offer(write)) {
+            rejectedCount.incrementAndGet();
+            log.warn("Result write queue {}; dropping result from {}", accepting ? "full" : "closed", result.getTimestamp());
+            write.future().completeExceptionally(new RejectedExecutionException("Result write queue is not accepting results"));
+        }
+        return write.future();
+    }
+
+    /**
+     * Takes the first waiting result, drains up to a batch behind it and writes them together,
+     * until the queue is closed and empty.
+     */
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (accepting || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Inserts one batch in a single transaction and completes its futures.
+     * @param batch The results to write.
+     */
+    private void flush(List<PendingWrite> batch) {
+        long start = System.nanoTime();
+        try {
+            List<SpeedTestResult> saved = repository.saveAll(batch.stream().map(PendingWrite::result).toList());
+            recordFlush(System.nanoTime() - start);
+            writtenCount.addAndGet(saved.size());
+            historyCache.addAll(saved);
+            for (int i = 0; i < batch.size(); i++) {
+                PendingWrite write = batch.get(i);
+                SpeedTestResult result = saved.get(i);
+                appendTraces(result, write);
+                write.future().complete(result);
+            }
+        } catch (RuntimeException e) {
+            failedCount.addAndGet(batch.size());
+            log.error("Failed to write {} speed test result(s)", batch.size(), e);
+            batch.forEach(write -> write.future().completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Stores the sample traces of a committed result. A failure here is logged by the store
+     * and never fails the result itself.
+     */
+    private void appendTraces(SpeedTestResult result, PendingWrite write) {
+        if (write.download() == null && write.upload() == null) return;
+        LocalDate date = result.getTimestamp() != null ? result.getTimestamp().toLocalDate() : LocalDate.now();
+        traceStore.append(result.getId(), date, TransferDirection.DOWNLOAD, write.download());
+        traceStore.append(result.getId(), date, TransferDirection.UPLOAD, write.upload());
+    }
+
+    private void recordFlush(long nanos) {
+        lastFlushNanos = nanos;
+        flushCount.incrementAndGet();
+        totalFlushNanos.addAndGet(nanos);
+        maxFlushNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /** @return The number of results waiting to be written. */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /** @return The number of results committed since startup. */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /** @return The number of results dropped because the queue was full or closed. */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /** @return The number of results whose batch failed to commit. */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /** @return The number of batches committed since startup. */
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    /** @return The duration of the most recent batch commit in milliseconds. */
+    public double getLastFlushMs() {
+        return lastFlushNanos / 1_000_000.0;
+    }
+
+    /** @return The mean duration of a batch commit in milliseconds, or {@code 0} before the first one. */
+    public double getAverageFlushMs() {
+        long flushes = flushCount.get();
+        return flushes == 0 ? 0.0 : totalFlushNanos.get() / 1_000_000.0 / flushes;
+    }
+
+    /** @return The longest batch commit seen so far in milliseconds. */
+    public double getMaxFlushMs() {
+        return maxFlushNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Stops accepting results and writes everything already queued before the context closes.
+     * The repository and the trace store are destroyed after this bean because the writer depends on them.
+     */
+    @PreDestroy
+    public void shutdown() {
+        // The writer is not interrupted: an interrupt inside a commit would close H2's file channel
+        accepting = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!writer.isAlive()) {
+            List<PendingWrite> late = new ArrayList<>();
+            queue.drainTo(late);
+            late.forEach(write -> write.future().completeExceptionally(new RejectedExecutionException("Result writer stopped")));
+        }
+        if (writer.isAlive() || !queue.isEmpty()) {
+            log.warn("{} speed test result(s) still unwritten at shutdown", queue.size());
+        }
+        log.info("Result writer stopped: {} written in {} batch(es), avg {} ms, max {} ms, {} rejected, {} failed",
+                writtenCount.get(), flushCount.get(), String.format("%.2f", getAverageFlushMs()),
+                String.format("%.2f", getMaxFlushMs()), rejectedCount.get(), failedCount.get());
+    }
+
+    /** A queued result, its optional traces and the future completed when it is committed. */
+    private record PendingWrite(SpeedTestResult result, SampleTrace download, SampleTrace upload,
+                                CompletableFuture<SpeedTestResult> future) {}
+}
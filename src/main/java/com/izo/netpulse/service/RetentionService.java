@@ -0,0 +1,151 @@
+package com.izo.netpulse.service;
+
+import com.izo.netpulse.model.BucketSize;
+import com.izo.netpulse.repository.TraceStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Scheduled retention job that keeps the local database bounded over years of monitoring.
+ * <p>Raw results older than {@code netpulse.retention.raw-days} are rolled up into hourly and
+ * daily {@link com.izo.netpulse.model.ResultRollup} rows (count, min, avg, max, p95), then
+ * deleted together with their sample traces. Both tiers are computed from the raw rows, so each
+ * is exact; hourly rollups are pruned after {@code netpulse.retention.hourly-days}, leaving the
+ * daily tier for the oldest history. Cutoffs are aligned to midnight so every rolled-up hour and
+ * day is complete. History queries read the raw and rollup tiers together, see
+ * {@link com.izo.netpulse.repository.SpeedRepository#aggregateHistory}.</p>
+ * <p>H2 only returns freed pages to the file system when it compacts on close, so once a run
+ * has deleted rows the database is shut down with {@code SHUTDOWN COMPACT} when the context
+ * closes. The {@link ResultWriter} depends on this bean, which makes it drain its queue first.</p>
+ */
+@Slf4j
+@Service
+public class RetentionService {
+
+    private static final String ROLLUP_SQL = """
+            INSERT INTO RESULT_ROLLUP (BUCKET_SIZE, BUCKET_START, SAMPLES,
+                                       DOWNLOAD_MIN, DOWNLOAD_AVG, DOWNLOAD_MAX, DOWNLOAD_P95,
+                                       UPLOAD_MIN, UPLOAD_AVG, UPLOAD_MAX, UPLOAD_P95)
+            SELECT CAST(? AS VARCHAR(16)),
+                   DATEADD(SECOND, b.BUCKET * ?, TIMESTAMP '1970-01-05 00:00:00'),
+                   COUNT(*),
+                   MIN(b.DOWNLOAD_MBPS), AVG(b.DOWNLOAD_MBPS), MAX(b.DOWNLOAD_MBPS),
+                   PERCENTILE_CONT(0.95) WITHIN GROUP (ORDER BY b.DOWNLOAD_MBPS),
+                   MIN(b.UPLOAD_MBPS), AVG(b.UPLOAD_MBPS), MAX(b.UPLOAD_MBPS),
+                   PERCENTILE_CONT(0.95) WITHIN GROUP (ORDER BY b.UPLOAD_MBPS)
+            FROM (SELECT FLOOR(DATEDIFF(SECOND, TIMESTAMP '1970-01-05 00:00:00', r.TIMESTAMP) / ?) AS BUCKET,
+                         r.DOWNLOAD_MBPS, r.UPLOAD_MBPS
+                  FROM SPEED_TEST_RESULT r
+                  WHERE r.TIMESTAMP < ?) b
+            GROUP BY b.BUCKET
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactions;
+    private final TraceStore traceStore;
+    private final HistoryCache historyCache;
+    private final boolean enabled;
+    private final int rawDays;
+    private final int hourlyDays;
+    private final AtomicBoolean compactionPending = new AtomicBoolean(false);
+
+    /**
+     * @param jdbc         The template used for the bulk rollup and delete statements.
+     * @param transactions Runs each pass in a single transaction.
+     * @param traceStore   The store whose old segments are deleted with the raw rows.
+     * @param historyCache The cache invalidated once history has been rewritten.
+     * @param enabled      Whether the scheduled pass runs at all.
+     * @param rawDays      How many days of raw results are kept.
+     * @param hourlyDays   How many days of hourly rollups are kept; never less than {@code rawDays}.
+     */
+    public RetentionService(JdbcTemplate jdbc, TransactionTemplate transactions, TraceStore traceStore,
+                            HistoryCache historyCache,
+                            @Value("${netpulse.retention.enabled:true}") boolean enabled,
+                            @Value("${netpulse.retention.raw-days:30}") int rawDays,
+                            @Value("${netpulse.retention.hourly-days:365}") int hourlyDays) {
+        this.jdbc = jdbc;
+        this.transactions = transactions;
+        this.traceStore = traceStore;
+        this.historyCache = historyCache;
+        this.enabled = enabled;
+        this.rawDays = Math.max(1, rawDays);
+        this.hourlyDays = Math.max(this.rawDays, hourlyDays);
+    }
+
+    /**
+     * Runs a retention pass on the configured schedule.
+     */
+    @Scheduled(initialDelayString = "${netpulse.retention.initial-delay-minutes:5}",
+            fixedDelayString = "${netpulse.retention.interval-minutes:360}", timeUnit = TimeUnit.MINUTES)
+    public void scheduledCompaction() {
+        if (enabled) compact(LocalDateTime.now());
+    }
+
+    /**
+     * Rolls up and deletes raw results that have aged out, prunes old hourly rollups and
+     * deletes the trace segments of the removed days.
+     * @param now The reference time the retention periods are counted back from.
+     * @return The number of raw results removed.
+     */
+    public synchronized int compact(LocalDateTime now) {
+        LocalDateTime rawCutoff = now.toLocalDate().minusDays(rawDays).atStartOfDay();
+        LocalDateTime hourlyCutoff = now.toLocalDate().minusDays(hourlyDays).atStartOfDay();
+
+        int[] counts = transactions.execute(status -> new int[] {
+                rollUp(BucketSize.HOURLY, rawCutoff),
+                rollUp(BucketSize.DAILY, rawCutoff),
+                jdbc.update("DELETE FROM SPEED_TEST_RESULT WHERE TIMESTAMP < ?", rawCutoff),
+                jdbc.update("DELETE FROM RESULT_ROLLUP WHERE BUCKET_SIZE = ? AND BUCKET_START < ?",
+                        BucketSize.HOURLY.name(), hourlyCutoff)
+        });
+        int traceSegments = traceStore.deleteBefore(rawCutoff.toLocalDate());
+
+        if (counts[2] > 0 || counts[3] > 0) {
+            compactionPending.set(true);
+            historyCache.invalidateAll();
+            log.info("Retention: rolled {} result(s) before {} into {} hourly and {} daily bucket(s), "
+                            + "pruned {} hourly bucket(s) before {}, deleted {} trace segment(s)",
+                    counts[2], rawCutoff.toLocalDate(), counts[0], counts[1], counts[3], hourlyCutoff.toLocalDate(), traceSegments);
+        }
+        return counts[2];
+    }
+
+    /**
+     * Inserts one rollup row per non-empty bucket of the raw results before the cutoff.
+     * @return The number of buckets written.
+     */
+    private int rollUp(BucketSize tier, LocalDateTime cutoff) {
+        return jdbc.update(ROLLUP_SQL, tier.name(), tier.getSeconds(), tier.getSeconds(), cutoff);
+    }
+
+    /** @return {@code true} if rows have been deleted since startup and the file will be compacted on close. */
+    public boolean isCompactionPending() {
+        return compactionPending.get();
+    }
+
+    /**
+     * Compacts the H2 file on close if a retention pass freed space. This shuts the database down,
+     * so it runs after the result writer has drained; the connection pool simply finds its
+     * connections closed afterwards.
+     */
+    @PreDestroy
+    public void compactOnShutdown() {
+        if (!compactionPending.get()) return;
+        try {
+            long start = System.nanoTime();
+            jdbc.execute("SHUTDOWN COMPACT");
+            log.info("Compacted database in {} ms", (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.warn("Database compaction on shutdown failed", e);
+        }
+    }
+}
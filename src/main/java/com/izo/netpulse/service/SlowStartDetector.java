@@ -0,0 +1,111 @@
+package com.izo.netpulse.service;
+
+import java.util.Arrays;
+
+/**
+ * Separates the TCP slow-start warm-up of a throughput test from its steady state.
+ * <p>The detector records the cumulative byte count at every sampling tick. Once the test ends,
+ * {@link #finish()} computes the rate of every sliding one-second window. The best window is the
+ * <em>peak sustained</em> throughput. The warm-up ends at the first window that reaches 90% of
+ * that peak. The <em>steady-state</em> mean is the byte rate from there to the end of the test,
+ * so handshakes and congestion-window growth no longer drag the reported figure down on
+ * high bandwidth-delay links.</p>
+ * <p>At most half of the test is ever excluded, so a link that never settles still reports a
+ * figure based on its second half.</p>
+ */
+public final class SlowStartDetector {
+
+    private static final long SUSTAIN_WINDOW_NANOS = 1_000_000_000L;
+    private static final double STEADY_THRESHOLD = 0.9;
+    private static final double MAX_EXCLUDED_SHARE = 0.5;
+
+    private long[] times = new long[64];
+    private long[] bytes = new long[64];
+    private int count = 1;
+
+    private double overallMbps;
+    private double peakSustainedMbps;
+    private double steadyStateMbps;
+    private long rampUpMs;
+
+    /**
+     * Records the progress of the test at a sampling tick. The origin (no bytes at time zero) is implicit.
+     * @param elapsedNanos The time since the test started, from {@link System#nanoTime()}.
+     * @param totalBytes   The cumulative number of bytes transferred so far.
+     */
+    public void record(long elapsedNanos, long totalBytes) {
+        if (count == times.length) {
+            times = Arrays.copyOf(times, count * 2);
+            bytes = Arrays.copyOf(bytes, count * 2);
+        }
+        times[count] = elapsedNanos;
+        bytes[count] = totalBytes;
+        count++;
+    }
+
+    /**
+     * Analyses the recorded progress. Must be called once, after the last {@link #record(long, long)}.
+     */
+    public void finish() {
+        int last = count - 1;
+        overallMbps = rate(0, last);
+        peakSustainedMbps = overallMbps;
+        steadyStateMbps = overallMbps;
+        rampUpMs = 0;
+        if (last == 0) return;
+
+        // Rate of the shortest window of at least one second that starts at each tick
+        double[] windowMbps = new double[count];
+        int windows = 0;
+        for (int start = 0, end = 0; start < last; start++) {
+            while (end < last && times[end] - times[start] < SUSTAIN_WINDOW_NANOS) end++;
+            if (times[end] - times[start] < SUSTAIN_WINDOW_NANOS) break;
+            windowMbps[start] = rate(start, end);
+            windows++;
+        }
+        if (windows == 0) return;
+
+        double peak = 0;
+        for (int i = 0; i < windows; i++) peak = Math.max(peak, windowMbps[i]);
+
+        long maxExcludedNanos = (long) (times[last] * MAX_EXCLUDED_SHARE);
+        int steadyStart = 0;
+        while (steadyStart < windows - 1 && windowMbps[steadyStart] < STEADY_THRESHOLD * peak
+                && times[steadyStart + 1] <= maxExcludedNanos) {
+            steadyStart++;
+        }
+
+        steadyStateMbps = rate(steadyStart, last);
+        peakSustainedMbps = Math.max(peak, steadyStateMbps);
+        rampUpMs = times[steadyStart] / 1_000_000L;
+    }
+
+    /** @return The rate over the whole test, warm-up included, in Mbps. */
+    public double getOverallMbps() {
+        return overallMbps;
+    }
+
+    /** @return The best rate sustained over one second, in Mbps. */
+    public double getPeakSustainedMbps() {
+        return peakSustainedMbps;
+    }
+
+    /** @return The mean rate after the warm-up, in Mbps. */
+    public double getSteadyStateMbps() {
+        return steadyStateMbps;
+    }
+
+    /** @return The length of the excluded warm-up, in milliseconds. */
+    public long getRampUpMs() {
+        return rampUpMs;
+    }
+
+    /**
+     * @return The rate between two recorded ticks in Mbps, or {@code 0} for an empty span.
+     */
+    private double rate(int from, int to) {
+        long nanos = times[to] - times[from];
+        if (nanos <= 0) return 0.0;
+        return (bytes[to] - bytes[from]) * 8.0 * 1000.0 / nanos;
+    }
+}
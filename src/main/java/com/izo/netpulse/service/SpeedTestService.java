@@ -1,34 +1,44 @@
 package com.izo.netpulse.service;
 
+import com.izo.netpulse.model.BufferbloatGrade;
+import com.izo.netpulse.model.SampleTrace;
 import com.izo.netpulse.model.SpeedTestResult;
-import com.izo.netpulse.repository.SpeedRepository;
-import fr.bmartel.speedtest.SpeedTestSocket;
+import com.izo.netpulse.service.backend.CloudflareBackend;
+import com.izo.netpulse.service.backend.SpeedTestBackend;
 import javafx.application.Platform;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayInputStream;
-import java.io.FilterInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URI;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 /**
  * Core service for executing network speed tests.
  * Manages asynchronous download and upload tasks, latency measurements,
- * and persistence of test results to the database.
+ * and hands finished results to the write-behind {@link ResultWriter}.
+ * <p>The service itself is stateless with respect to individual runs: every run carries its own
+ * {@link TestSession}, so concurrent runs cannot cancel or overwrite each other.</p>
  * <p>This service utilizes a mix of OkHttp for downloads and the native
  * {@link java.net.http.HttpClient} for uploads to bypass module visibility
  * issues common with the okio library in named modules.</p>
@@ -38,39 +48,145 @@ import java.util.concurrent.atomic.AtomicLong;
 @RequiredArgsConstructor
 public class SpeedTestService {
 
-    private final SpeedRepository repository;
+    private final ResultWriter resultWriter;
+    private final NetworkTaskExecutor taskExecutor;
+    private final List<SpeedTestBackend> backends;
+    private final LatencyProbeEngine latencyEngine;
     private final OkHttpClient okClient = new OkHttpClient();
-    private SpeedTestSocket speedTestSocket;
-    private Call activeOkCall;
 
     /**
-     * Flag used to immediately terminate active network streams and UI updates.
+     * Download client pinned to HTTP/1.1 so that every stream opens its own TCP connection
+     * instead of being multiplexed onto a single HTTP/2 flow.
      */
-    private volatile boolean isCancelled = false;
+    private final OkHttpClient downloadClient = okClient.newBuilder()
+            .protocols(List.of(Protocol.HTTP_1_1))
+            .build();
+
+    private final Map<Long, TestSession> sessions = new ConcurrentHashMap<>();
+
+    private static final long NANOS_PER_MS = 1_000_000L;
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+    private static final long TEST_DURATION_MS = 7000;
+    private static final long DOWNLOAD_BYTES_PER_STREAM = 1_000_000_000L;
+    private static final long SAMPLE_INTERVAL_MS = 200;
+    private static final long UPLOAD_SAMPLE_INTERVAL_MS = 150;
+    private static final long UPLOAD_RESPONSE_GRACE_MS = 3000;
+    private static final int MOVING_AVERAGE_WINDOW = 10;
+    private static final long RAMP_STEP_MS = 1000;
+    private static final double RAMP_GROWTH_THRESHOLD = 1.10;
 
     /**
-     * The average latency (ping) in milliseconds calculated during the most recent measurement.
+     * Name of the {@link SpeedTestBackend} that tests run against, e.g. "cloudflare" or "loopback".
+     */
+    @Value("${netpulse.backend:" + CloudflareBackend.NAME + "}")
+    private String backendName;
+
+    /**
+     * Number of concurrent download streams. A value of {@code 0} enables automatic ramp-up,
+     * which adds streams for as long as the aggregate throughput keeps growing.
+     */
+    @Value("${netpulse.download.streams:0}")
+    private int downloadStreams;
+
+    /**
+     * Upper bound of concurrent download streams opened by the automatic ramp-up.
+     */
+    @Value("${netpulse.download.max-streams:8}")
+    private int maxDownloadStreams;
+
+    /**
+     * How download bodies are drained. {@link DownloadSink#SKIP} avoids copying received bytes,
+     * while {@link DownloadSink#STREAM} keeps the original heap-copy loop for comparison.
+     */
+    @Value("${netpulse.download.sink:SKIP}")
+    private DownloadSink downloadSink;
+
+    /**
+     * Number of concurrent upload streams sharing the same byte accounting.
+     */
+    @Value("${netpulse.upload.streams:4}")
+    private int uploadStreams;
+
+    /**
+     * Byte cap of a single upload stream; the test cutoff usually ends the body first.
+     */
+    @Value("${netpulse.upload.max-bytes-per-stream:500000000}")
+    private long maxUploadBytesPerStream;
+
+    /**
+     * Whether tests stop once their throughput estimate converges instead of after a fixed 7 seconds.
+     */
+    @Value("${netpulse.test.adaptive-duration:true}")
+    private boolean adaptiveDuration;
+
+    /**
+     * Earliest point at which an adaptive test may stop.
+     */
+    @Value("${netpulse.test.min-duration-ms:3000}")
+    private long minDurationMs;
+
+    /**
+     * Point at which an adaptive test always stops, even if it has not converged.
+     */
+    @Value("${netpulse.test.max-duration-ms:15000}")
+    private long maxDurationMs;
+
+    /**
+     * Relative spread (e.g. 0.05 for ±5%) within which recent throughput estimates count as converged.
+     */
+    @Value("${netpulse.test.convergence-band:0.05}")
+    private double convergenceBand;
+
+    /**
+     * The average latency (ping) in milliseconds calculated during the most recent measurement of any session.
      * @return The current measured latency.
      */
     @Getter
     private volatile double currentLatency = 0.0;
 
+    /**
+     * The phase-resolved latency summary of the most recent idle measurement of any session,
+     * or {@code null} before the first one.
+     * @return The latest latency measurement.
+     */
+    @Getter
+    private volatile LatencyResult latestLatency;
+
     /**
      * Callback interface for communicating test progress and final results to the UI.
-     * Updates are guaranteed to be wrapped in {@link Platform#runLater(Runnable)}.
+     * Final results and errors are guaranteed to be wrapped in {@link Platform#runLater(Runnable)}.
+     * Progress updates are delivered directly on the sampling thread, so a fast sampler cannot
+     * flood the FX event queue; implementations should hand the value off through a
+     * latest-value slot rather than touch the scene graph.
      */
     public interface TestCallback {
         /**
-         * Called periodically to update the real-time speed display (e.g., a gauge needle).
+         * Called periodically, on the sampling thread, to update the real-time speed display (e.g., a gauge needle).
          * @param mbps The instantaneous speed in Megabits per second.
          */
         void onInstantUpdate(double mbps);
 
+        /**
+         * Called alongside {@link #onInstantUpdate(double)}, on the same thread, with the breakdown of every open stream.
+         * Useful for spotting single-flow limits on multi-stream tests.
+         * @param streamMbps The instantaneous speed of each stream in Megabits per second.
+         */
+        default void onStreamUpdate(double[] streamMbps) {}
+
         /**
          * Called when the test completes successfully.
          * @param averageMbps The calculated average speed for the duration of the test.
          */
-        void onComplete(double averageMbps);
+        default void onComplete(double averageMbps) {}
+
+        /**
+         * Called when the test completes successfully with the full measurement summary.
+         * Defaults to forwarding the average speed to {@link #onComplete(double)}.
+         * @param result The measured speed, bytes, duration and stream count of the test.
+         */
+        default void onResult(ThroughputResult result) {
+            onComplete(result.getAverageMbps());
+        }
 
         /**
          * Called if the test fails due to network or logic errors.
@@ -80,205 +196,631 @@ public class SpeedTestService {
     }
 
     /**
-     * Initiates an asynchronous download test using OkHttp.
-     * <p>The test requests 1GB of data from Cloudflare but terminates after 7 seconds
-     * or upon cancellation to provide a consistent user experience.</p>
-     * @param callback The handler for real-time updates and results.
+     * Opens a new test session against the backend selected through {@code netpulse.backend}.
+     * @return The new session, registered until it completes, fails or is stopped.
      */
-    public void runDownloadTest(TestCallback callback) {
-        isCancelled = false;
-        String url = "https://speed.cloudflare.com/__down?bytes=1000000000";
-
-        activeOkCall = okClient.newCall(new Request.Builder()
-                .url(url)
-                .addHeader("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:147.0) Gecko/20100101 Firefox/147.0")
-                .addHeader("Accept", "*/*")
-                .addHeader("Referer", "https://speed.cloudflare.com/")
-                .addHeader("Sec-Fetch-Mode", "cors")
-                .addHeader("Sec-Fetch-Site", "same-origin")
-                .build());
-
-        new Thread(() -> {
-            long testStartTime = System.currentTimeMillis();
-            List<Double> speedSamples = new ArrayList<>();
-            Queue<Double> window = new LinkedList<>();
-
-            try (Response response = activeOkCall.execute()) {
-                if (!response.isSuccessful()) throw new IOException("HTTP " + response.code());
-
-                InputStream is = response.body().byteStream();
-                byte[] buffer = new byte[32768];
-                long lastTick = System.currentTimeMillis();
-                long bytesInInterval = 0;
-                int read;
-
-                while (!isCancelled && (read = is.read(buffer)) != -1) {
-                    long now = System.currentTimeMillis();
-                    bytesInInterval += read;
+    public TestSession newSession() {
+        return newSession(backendName);
+    }
 
-                    if (now - lastTick >= 200) {
-                        double seconds = (now - lastTick) / 1000.0;
-                        double mbps = (bytesInInterval * 8.0) / (1_000_000.0 * seconds);
+    /**
+     * Opens a new test session against a specific backend. Sessions are fully isolated, so
+     * several may run at once, e.g. one per backend.
+     * @param backendName The backend name, e.g. "cloudflare" or "loopback".
+     * @return The new session, registered until it completes, fails or is stopped.
+     * @throws IllegalArgumentException If no backend with that name is registered.
+     */
+    public TestSession newSession(String backendName) {
+        TestSession session = new TestSession(getBackend(backendName));
+        sessions.put(session.getId(), session);
+        return session;
+    }
 
-                        speedSamples.add(mbps);
-                        window.add(mbps);
-                        if (window.size() > 10) window.poll();
+    /**
+     * @return A snapshot of every session that has not completed, failed or been stopped yet.
+     */
+    public List<TestSession> getActiveSessions() {
+        return List.copyOf(sessions.values());
+    }
 
-                        double movingAvg = window.stream().mapToDouble(d -> d).average().orElse(0.0);
-                        Platform.runLater(() -> callback.onInstantUpdate(movingAvg));
+    /**
+     * Initiates an asynchronous download test using OkHttp.
+     * <p>The test requests 1GB of data per stream from the active backend but terminates after 7 seconds
+     * (or, in adaptive mode, once the throughput estimate converges) or upon cancellation. Bytes from every concurrent
+     * stream are summed into a single aggregated sample, so the reported speed reflects the
+     * whole link rather than the limits of a single TCP flow.</p>
+     * <p>When {@code netpulse.download.streams} is {@code 0}, the test starts with one stream and
+     * doubles the stream count every second for as long as the aggregate throughput keeps growing.</p>
+     * @param session  The session the test belongs to; its result is stored on it as well.
+     * @param callback The handler for real-time updates and results.
+     */
+    public void runDownloadTest(TestSession session, TestCallback callback) {
+        if (!session.enter(TestSession.Phase.DOWNLOAD)) return;
+        NetworkTaskExecutor.TaskGroup tasks = startTaskGroup(session, "download");
+        Request request = session.getBackend().downloadRequest(DOWNLOAD_BYTES_PER_STREAM);
+
+        boolean autoRamp = downloadStreams <= 0;
+        int maxStreams = autoRamp ? Math.max(1, maxDownloadStreams) : downloadStreams;
+        TransferCounters counters = new TransferCounters(maxStreams);
+        session.setCounters(counters);
+        AtomicInteger liveStreams = new AtomicInteger(0);
+        AtomicBoolean finished = new AtomicBoolean(false);
+        AtomicReference<Exception> streamFailure = new AtomicReference<>();
+
+        ConvergenceDetector detector = newConvergenceDetector();
+
+        tasks.submit("sampler", () -> {
+            long testStartTime = System.nanoTime();
+            ThroughputSampler sampler = new ThroughputSampler(MOVING_AVERAGE_WINDOW);
+            SlowStartDetector slowStart = new SlowStartDetector();
+            SampleTrace trace = new SampleTrace();
+            long[] lastStreamBytes = new long[maxStreams];
 
-                        bytesInInterval = 0;
-                        lastTick = now;
+            try {
+                int initialStreams = autoRamp ? 1 : maxStreams;
+                for (int i = 0; i < initialStreams; i++) {
+                    openDownloadStream(session, tasks, request, counters, liveStreams, finished, streamFailure);
+                }
+                AtomicReference<LatencyResult> loadedLatency =
+                        startLoadedLatencyProbe(session, tasks, () -> !session.isCancelled() && !finished.get());
+
+                long lastTick = testStartTime;
+                long lastTotal = 0;
+                boolean ramping = autoRamp && maxStreams > 1;
+                long lastRampTick = testStartTime;
+                long lastRampTotal = 0;
+                double lastRampMbps = 0;
+
+                while (!session.isCancelled()) {
+                    Thread.sleep(SAMPLE_INTERVAL_MS);
+                    long now = System.nanoTime();
+                    long total = counters.total();
+
+                    Exception failure = streamFailure.get();
+                    if (failure != null && total == 0) throw failure;
+
+                    double seconds = (now - lastTick) / NANOS_PER_SECOND;
+                    double mbps = toMbps(total - lastTotal, seconds);
+
+                    double movingAvg = sampler.add(mbps);
+                    detector.addEstimate(movingAvg);
+                    slowStart.record(now - testStartTime, total);
+                    trace.record(now - testStartTime, total, mbps);
+                    double[] streamMbps = sampleStreamRates(counters, lastStreamBytes, seconds);
+
+                    callback.onInstantUpdate(movingAvg);
+                    callback.onStreamUpdate(streamMbps);
+
+                    lastTick = now;
+                    lastTotal = total;
+
+                    // Keep doubling the stream count while each step still adds meaningful throughput
+                    if (ramping && now - lastRampTick >= RAMP_STEP_MS * NANOS_PER_MS) {
+                        double stepMbps = toMbps(total - lastRampTotal, (now - lastRampTick) / NANOS_PER_SECOND);
+                        int opened = counters.streamCount();
+                        if (stepMbps > lastRampMbps * RAMP_GROWTH_THRESHOLD && opened < maxStreams) {
+                            int toOpen = Math.min(opened, maxStreams - opened);
+                            for (int i = 0; i < toOpen; i++) {
+                                openDownloadStream(session, tasks, request, counters, liveStreams, finished, streamFailure);
+                            }
+                        } else {
+                            ramping = false;
+                            log.debug("Download ramp-up settled at {} stream(s)", opened);
+                        }
+                        lastRampMbps = stepMbps;
+                        lastRampTick = now;
+                        lastRampTotal = total;
                     }
-                    if (now - testStartTime >= 7000) break;
+
+                    if (detector.shouldStop((now - testStartTime) / NANOS_PER_MS, !ramping)) break;
+                    if (liveStreams.get() == 0 && !ramping) break;
                 }
 
-                if (!isCancelled) {
-                    double avg = speedSamples.stream().mapToDouble(d -> d).average().orElse(0.0);
-                    Platform.runLater(() -> callback.onComplete(avg));
+                if (!session.isCancelled()) {
+                    long durationMs = (System.nanoTime() - testStartTime) / NANOS_PER_MS;
+                    ThroughputResult result = summarise(sampler, slowStart, counters, durationMs, detector,
+                            loadedLatency.get(), trace);
+                    logResult("Download", result, counters);
+                    session.setDownload(result);
+                    Platform.runLater(() -> callback.onResult(result));
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             } catch (Exception e) {
-                if (!isCancelled) handleError(callback, "Download Failed: " + e.getMessage());
+                if (!session.isCancelled()) handleError(session, callback, "Download Failed: " + e.getMessage());
+            } finally {
+                finished.set(true);
+                session.cancelCalls();
             }
-        }).start();
+        });
     }
 
     /**
-     * Initiates an asynchronous upload test using the native {@link HttpClient}.
-     * <p>This implementation avoids third-party okio dependencies to prevent module visibility errors.
-     * It uses a custom {@link FilterInputStream} to track progress and enforce a 7-second cutoff.</p>
-     * * @param callback The handler for real-time updates and results.
+     * Starts a single download stream that drains its response body into the shared counters
+     * through the configured {@link DownloadSink} until the test finishes or is cancelled.
+     * @param session       The session the stream belongs to.
+     * @param tasks         The task group of the running test.
+     * @param request       The download request to execute.
+     * @param counters      The shared byte counters of the running test.
+     * @param liveStreams   Counter of streams that are still receiving data.
+     * @param finished      Flag raised by the sampler once the test window has closed.
+     * @param streamFailure Holder for the first error raised by any stream.
      */
-    public void runUploadTest(TestCallback callback) {
-        isCancelled = false;
-        String url = "https://speed.cloudflare.com/__up";
-        byte[] data = new byte[500_000_000]; // 500MB payload
+    private void openDownloadStream(TestSession session, NetworkTaskExecutor.TaskGroup tasks, Request request,
+                                    TransferCounters counters, AtomicInteger liveStreams, AtomicBoolean finished,
+                                    AtomicReference<Exception> streamFailure) {
+        int slot = counters.openStream();
+        if (slot < 0) return;
+
+        Call call = downloadClient.newCall(request);
+        session.trackCall(call);
+        liveStreams.incrementAndGet();
+
+        boolean started = tasks.submit("stream-" + slot, () -> {
+            try (Response response = call.execute()) {
+                if (!response.isSuccessful()) throw new IOException("HTTP " + response.code());
 
-        AtomicLong totalBytesSent = new AtomicLong(0);
-        long testStartTime = System.currentTimeMillis();
+                downloadSink.drain(response.body(),
+                        () -> !session.isCancelled() && !finished.get(),
+                        bytes -> counters.add(slot, bytes));
+            } catch (Exception e) {
+                if (!session.isCancelled() && !finished.get()) streamFailure.compareAndSet(null, e);
+            } finally {
+                liveStreams.decrementAndGet();
+            }
+        });
+        if (!started) liveStreams.decrementAndGet();
+    }
 
-        InputStream progressStream = new FilterInputStream(new ByteArrayInputStream(data)) {
-            private long lastTick = System.currentTimeMillis();
-            private long bytesInInterval = 0;
+    /**
+     * Builds the summary of a finished test from its sampler and counters.
+     * The headline speed is the steady-state mean, with the slow-start warm-up left out.
+     * @param sampler     The sampler holding the distribution of instantaneous samples.
+     * @param slowStart   The detector holding the byte progress of the test.
+     * @param counters    The byte counters of the test.
+     * @param durationMs  How long the test actually ran.
+     * @param detector    The stop policy used by the test.
+     * @param loadedLatency The latency measured while the test was running, or {@code null}.
+     * @param trace       Every sample taken during the test.
+     * @return The immutable test summary.
+     */
+    private static ThroughputResult summarise(ThroughputSampler sampler, SlowStartDetector slowStart,
+                                              TransferCounters counters, long durationMs,
+                                              ConvergenceDetector detector, LatencyResult loadedLatency,
+                                              SampleTrace trace) {
+        slowStart.finish();
+        return ThroughputResult.builder()
+                .averageMbps(slowStart.getSteadyStateMbps())
+                .peakSustainedMbps(slowStart.getPeakSustainedMbps())
+                .overallMbps(slowStart.getOverallMbps())
+                .rampUpMs(slowStart.getRampUpMs())
+                .p50Mbps(sampler.getP50())
+                .p90Mbps(sampler.getP90())
+                .p99Mbps(sampler.getP99())
+                .maxMbps(sampler.getMax())
+                .histogram(sampler.getHistogram())
+                .trace(trace)
+                .totalBytes(counters.total())
+                .durationMs(durationMs)
+                .streams(counters.streamCount())
+                .converged(detector.isConverged())
+                .loadedLatency(loadedLatency)
+                .build();
+    }
 
-            @Override
-            public int read(byte[] b, int off, int len) throws IOException {
-                long now = System.currentTimeMillis();
+    /**
+     * Logs the outcome of a test, including the average throughput of every stream
+     * so single-flow limits are easy to spot.
+     * @param phase    The test phase, e.g. "Download".
+     * @param result   The summary of the finished test.
+     * @param counters The byte counters of the finished test.
+     */
+    private void logResult(String phase, ThroughputResult result, TransferCounters counters) {
+        log.info("{} finished: {} Mbps steady after {} ms warm-up (peak sustained {} / overall {} Mbps)", phase,
+                String.format("%.1f", result.getAverageMbps()), result.getRampUpMs(),
+                String.format("%.1f", result.getPeakSustainedMbps()), String.format("%.1f", result.getOverallMbps()));
+        log.info("{} samples: p50 {} / p90 {} / p99 {} / max {} Mbps, {} bytes in {} ms ({})", phase,
+                String.format("%.1f", result.getP50Mbps()),
+                String.format("%.1f", result.getP90Mbps()), String.format("%.1f", result.getP99Mbps()),
+                String.format("%.1f", result.getMaxMbps()), result.getTotalBytes(), result.getDurationMs(),
+                result.isConverged() ? "converged" : "full duration");
+        double seconds = result.getDurationMs() / 1000.0;
+        StringBuilder breakdown = new StringBuilder();
+        for (int i = 0; i < counters.streamCount(); i++) {
+            breakdown.append(String.format("[#%d %.1f Mbps] ", i, toMbps(counters.streamTotal(i), seconds)));
+        }
+        log.info("Throughput over {} stream(s): {}", counters.streamCount(), breakdown.toString().trim());
+        LatencyResult loaded = result.getLoadedLatency();
+        if (loaded != null) {
+            log.info("{} loaded latency: avg {} / p95 {} ms, jitter {} ms over {} probe(s)", phase,
+                    String.format("%.1f", loaded.getAvgMs()), String.format("%.1f", loaded.getP95Ms()),
+                    String.format("%.1f", loaded.getJitterMs()), loaded.getProbesSent());
+        }
+    }
 
-                // Terminate if 7 seconds elapsed or if the user cancelled
-                if (isCancelled || (now - testStartTime >= 7000)) {
-                    return -1;
-                }
+    /**
+     * Derives the instantaneous rate of every opened stream since the previous sample.
+     * @param counters        The shared byte counters of the running test.
+     * @param lastStreamBytes Per-stream totals seen at the previous sample, updated in place.
+     * @param seconds         The length of the sampling interval.
+     * @return The rate of each opened stream in Mbps.
+     */
+    private static double[] sampleStreamRates(TransferCounters counters, long[] lastStreamBytes, double seconds) {
+        double[] streamMbps = new double[counters.streamCount()];
+        for (int i = 0; i < streamMbps.length; i++) {
+            long streamTotal = counters.streamTotal(i);
+            streamMbps[i] = toMbps(streamTotal - lastStreamBytes[i], seconds);
+            lastStreamBytes[i] = streamTotal;
+        }
+        return streamMbps;
+    }
 
-                int read = super.read(b, off, len);
-                if (read != -1) {
-                    bytesInInterval += read;
-                    totalBytesSent.addAndGet(read);
-
-                    if (now - lastTick >= 150) { // Trigger needle movement every 150ms
-                        double seconds = (now - lastTick) / 1000.0;
-                        double mbps = (bytesInInterval * 8.0) / (1_000_000.0 * seconds);
-                        Platform.runLater(() -> callback.onInstantUpdate(mbps));
-                        bytesInInterval = 0;
-                        lastTick = now;
-                    }
-                }
-                return read;
-            }
-        };
+    /**
+     * Converts a byte count over a time span into Megabits per second.
+     * @param bytes   The number of bytes transferred.
+     * @param seconds The duration of the transfer.
+     * @return The rate in Mbps, or {@code 0} for an empty interval.
+     */
+    private static double toMbps(long bytes, double seconds) {
+        if (seconds <= 0) return 0.0;
+        return (bytes * 8.0) / (1_000_000.0 * seconds);
+    }
+
+    /**
+     * Initiates an asynchronous upload test using the native {@link HttpClient}.
+     * <p>This implementation avoids third-party okio dependencies to prevent module visibility errors.
+     * It runs {@code netpulse.upload.streams} concurrent POST requests, each streamed from an
+     * {@link UploadPayloadPublisher} that records progress into shared lock-free counters and
+     * ends the body after 7 seconds (or on convergence in adaptive mode) or
+     * {@code netpulse.upload.max-bytes-per-stream} bytes.
+     * The sampler reports the aggregate rate and per-stream breakdown.</p>
+     * @param session  The session the test belongs to; its result is stored on it as well.
+     * @param callback The handler for real-time updates and results.
+     */
+    public void runUploadTest(TestSession session, TestCallback callback) {
+        if (!session.enter(TestSession.Phase.UPLOAD)) return;
+        SpeedTestBackend backend = session.getBackend();
+
+        int streams = Math.max(1, uploadStreams);
+        TransferCounters counters = new TransferCounters(streams);
+        session.setCounters(counters);
+        ConvergenceDetector detector = newConvergenceDetector();
+        AtomicBoolean finished = new AtomicBoolean(false);
+        long testStartTime = System.nanoTime();
 
         HttpClient client = HttpClient.newBuilder()
                 .version(HttpClient.Version.HTTP_1_1)
                 .build();
+        session.attachUploadClient(client);
+        NetworkTaskExecutor.TaskGroup tasks = startTaskGroup(session, "upload");
 
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
-                .header("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:147.0) Gecko/20100101 Firefox/147.0")
-                .header("Referer", "https://speed.cloudflare.com/")
-                .header("Origin", "https://speed.cloudflare.com")
-                .header("Sec-Fetch-Mode", "cors")
-                .header("Sec-Fetch-Site", "same-origin")
-                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> progressStream))
-                .build();
-
-        new Thread(() -> {
+        tasks.submit("sampler", () -> {
+            List<CompletableFuture<HttpResponse<Void>>> uploads = new ArrayList<>();
             try {
-                // Execute the POST; the progressStream handles the 7s termination
-                client.send(request, HttpResponse.BodyHandlers.discarding());
-
-                if (!isCancelled) {
-                    long endTime = System.currentTimeMillis();
-                    double totalSeconds = (endTime - testStartTime) / 1000.0;
-                    // Mbps = (total_bits) / (1,000,000 * seconds)
-                    double finalMbps = (totalBytesSent.get() * 8.0) / (1_000_000.0 * totalSeconds);
-                    Platform.runLater(() -> callback.onComplete(finalMbps));
+                for (int i = 0; i < streams; i++) {
+                    int slot = counters.openStream();
+                    HttpRequest request = backend.uploadRequest()
+                            .POST(new UploadPayloadPublisher(maxUploadBytesPerStream,
+                                    testStartTime + detector.getMaxDurationMs() * NANOS_PER_MS,
+                                    () -> session.isCancelled() || finished.get(), bytes -> counters.add(slot, bytes)))
+                            .build();
+                    uploads.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
                 }
+
+                CompletableFuture<Void> allUploads = CompletableFuture.allOf(uploads.toArray(new CompletableFuture[0]));
+                AtomicReference<LatencyResult> loadedLatency =
+                        startLoadedLatencyProbe(session, tasks, () -> !session.isCancelled() && !finished.get());
+                long lastTick = testStartTime;
+                long lastTotal = 0;
+                long[] lastStreamBytes = new long[streams];
+                ThroughputSampler sampler = new ThroughputSampler(MOVING_AVERAGE_WINDOW);
+                SlowStartDetector slowStart = new SlowStartDetector();
+                SampleTrace trace = new SampleTrace();
+                long stopTime = 0;
+
+                // Sample the shared counters until every stream has hit the cutoff and the server has replied
+                while (!session.isCancelled() && !allUploads.isDone()) {
+                    Thread.sleep(UPLOAD_SAMPLE_INTERVAL_MS);
+                    long now = System.nanoTime();
+                    long total = counters.total();
+                    double seconds = (now - lastTick) / NANOS_PER_SECOND;
+
+                    double mbps = toMbps(total - lastTotal, seconds);
+                    double movingAvg = finished.get() ? sampler.getMovingAverage() : sampler.add(mbps);
+                    double[] streamMbps = sampleStreamRates(counters, lastStreamBytes, seconds);
+                    callback.onInstantUpdate(movingAvg);
+                    callback.onStreamUpdate(streamMbps);
+
+                    lastTick = now;
+                    lastTotal = total;
+
+                    // Once converged (or timed out), end every request body and wait for the server replies
+                    if (!finished.get()) {
+                        slowStart.record(now - testStartTime, total);
+                        trace.record(now - testStartTime, total, mbps);
+                        detector.addEstimate(movingAvg);
+                        if (detector.shouldStop((now - testStartTime) / NANOS_PER_MS, true)) {
+                            finished.set(true);
+                            stopTime = now;
+                        }
+                    } else if (now - stopTime >= UPLOAD_RESPONSE_GRACE_MS * NANOS_PER_MS) {
+                        break;
+                    }
+                }
+
+                if (!session.isCancelled()) {
+                    Throwable failure = uploads.stream()
+                            .filter(CompletableFuture::isCompletedExceptionally)
+                            .map(CompletableFuture::exceptionNow)
+                            .findFirst().orElse(null);
+                    if (failure != null && counters.total() == 0) throw new IOException(failure.getMessage(), failure);
+
+                    // The grace wait for server replies is not part of the test
+                    long endTime = stopTime != 0 ? stopTime : System.nanoTime();
+                    long durationMs = (endTime - testStartTime) / NANOS_PER_MS;
+                    ThroughputResult result = summarise(sampler, slowStart, counters, durationMs, detector,
+                            loadedLatency.get(), trace);
+                    logResult("Upload", result, counters);
+                    session.setUpload(result);
+                    Platform.runLater(() -> callback.onResult(result));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             } catch (Exception e) {
-                if (!isCancelled) handleError(callback, "Upload Error: " + e.getMessage());
+                if (!session.isCancelled()) handleError(session, callback, "Upload Error: " + e.getMessage());
+            } finally {
+                finished.set(true);
+                uploads.forEach(f -> f.cancel(true));
+                client.shutdownNow();
             }
-        }).start();
+        });
     }
 
     /**
-     * Measures average network latency by performing 5 consecutive HTTP HEAD requests.
-     * Result is stored in {@link #currentLatency}.
-     * @param onComplete Runnable to execute on the UI thread upon success.
-     * @param onError    Runnable to execute on the UI thread if pings fail.
+     * Measures idle latency with a paced series of probes against the active backend.
+     * Every probe is broken down into DNS, TCP connect, TLS and time-to-first-byte, and the series
+     * is summarised into min/avg/p95 round trip, jitter and probe loss.
+     * The result is stored on the session, in {@link #latestLatency}, and its average in {@link #currentLatency}.
+     * <p>If every probe is lost the test still goes on: a probe endpoint that is blocked or briefly
+     * down must not leave a gap in the history. The session then records 100% loss and no round
+     * trip figures, and {@code onComplete} receives that result.</p>
+     * @param session    The session the measurement belongs to.
+     * @param onComplete Receives the latency summary on the UI thread; check {@link #isLost(LatencyResult)}.
      */
-    public void measureLatencyAverage(Runnable onComplete, Runnable onError) {
-        new Thread(() -> {
-            List<Double> latencies = new ArrayList<>();
-            Request pingRequest = new Request.Builder()
-                    .url("https://www.google.com/generate_204")
-                    .addHeader("User-Agent", "Mozilla/5.0")
-                    .build();
-
-            try {
-                for (int i = 0; i < 5; i++) {
-                    if (isCancelled) return;
-                    long start = System.currentTimeMillis();
-                    try (Response response = okClient.newCall(pingRequest).execute()) {
-                        if (response.isSuccessful()) {
-                            latencies.add((double)(System.currentTimeMillis() - start));
-                        }
-                    } catch (IOException ignored) {}
-                }
-                if (latencies.isEmpty()) throw new IOException("Ping failed");
-                this.currentLatency = latencies.stream().mapToDouble(d -> d).average().orElse(0.0);
-                Platform.runLater(onComplete);
-            } catch (Exception e) {
-                Platform.runLater(onError);
+    public void measureLatency(TestSession session, Consumer<LatencyResult> onComplete) {
+        if (!session.enter(TestSession.Phase.LATENCY)) return;
+        startTaskGroup(session, "latency").submit("probe", () -> {
+            LatencyResult latency = latencyEngine.measure(session.getBackend().latencyRequest(), () -> !session.isCancelled());
+            if (session.isCancelled()) return;
+
+            if (latency.getProbesSent() > 0 && latency.getLossPercent() < 100.0) {
+                session.setLatency(latency);
+                this.latestLatency = latency;
+                this.currentLatency = latency.getAvgMs();
+                log.info("Latency: min {} / avg {} / p95 {} ms, jitter {} ms, loss {}% (dns {} / tcp {} / tls {} ms)",
+                        String.format("%.1f", latency.getMinMs()), String.format("%.1f", latency.getAvgMs()),
+                        String.format("%.1f", latency.getP95Ms()), String.format("%.1f", latency.getJitterMs()),
+                        String.format("%.0f", latency.getLossPercent()), String.format("%.1f", latency.getDnsMs()),
+                        String.format("%.1f", latency.getConnectMs()), String.format("%.1f", latency.getTlsMs()));
+                Platform.runLater(() -> onComplete.accept(latency));
+            } else {
+                LatencyResult lost = LatencyResult.builder()
+                        .lossPercent(100.0)
+                        .probesSent(latency.getProbesSent())
+                        .localAddress(latency.getLocalAddress())
+                        .serverAddress(latency.getServerAddress())
+                        .build();
+                session.setLatency(lost);
+                log.warn("Latency: all {} probe(s) lost, continuing with the throughput test", latency.getProbesSent());
+                Platform.runLater(() -> onComplete.accept(lost));
             }
-        }).start();
+        });
+    }
+
+    /**
+     * @param latency An idle latency summary.
+     * @return {@code true} if no probe was answered, so the result carries no round trip figures.
+     */
+    public static boolean isLost(LatencyResult latency) {
+        return latency.getLossPercent() >= 100.0;
+    }
+
+    /**
+     * Starts a probe stream that measures latency while a throughput test saturates the link,
+     * exposing queueing delay (bufferbloat) that idle probes never see.
+     * @param session   The session of the running test.
+     * @param tasks     The task group of the running test.
+     * @param underLoad Polled before every probe; probing stops once the test window closes.
+     * @return Holder of the latest loaded-latency summary, empty until the first probe completes.
+     */
+    private AtomicReference<LatencyResult> startLoadedLatencyProbe(TestSession session, NetworkTaskExecutor.TaskGroup tasks,
+                                                                   BooleanSupplier underLoad) {
+        AtomicReference<LatencyResult> latest = new AtomicReference<>();
+        Request ping = session.getBackend().latencyRequest();
+        tasks.submit("latency", () -> latencyEngine.probeWhile(ping, underLoad, latest::set));
+        return latest;
     }
 
     /**
-     * Helper method to dispatch error messages to the UI thread.
+     * Grades the rise of loaded over idle latency, using whichever test phase suffered most.
+     * @param idle     The idle latency summary.
+     * @param download The download test summary.
+     * @param upload   The upload test summary.
+     * @return The bufferbloat grade, or {@code null} if idle or loaded latency is missing.
      */
-    private void handleError(TestCallback callback, String msg) {
+    public static BufferbloatGrade gradeBufferbloat(LatencyResult idle, ThroughputResult download, ThroughputResult upload) {
+        if (idle == null || isLost(idle)) return null;
+        double worstLoadedMs = Double.NaN;
+        for (ThroughputResult phase : new ThroughputResult[]{download, upload}) {
+            LatencyResult loaded = phase.getLoadedLatency();
+            if (loaded == null || isLost(loaded)) continue;
+            if (Double.isNaN(worstLoadedMs) || loaded.getAvgMs() > worstLoadedMs) worstLoadedMs = loaded.getAvgMs();
+        }
+        if (Double.isNaN(worstLoadedMs)) return null;
+        return BufferbloatGrade.forIncrease(worstLoadedMs - idle.getAvgMs());
+    }
+
+    /**
+     * Creates the stop policy for the next test according to the configured duration mode.
+     * @return An adaptive detector, or a fixed 7-second one when adaptive duration is disabled.
+     */
+    private ConvergenceDetector newConvergenceDetector() {
+        if (!adaptiveDuration) return ConvergenceDetector.fixed(TEST_DURATION_MS);
+        return new ConvergenceDetector(minDurationMs, maxDurationMs, convergenceBand);
+    }
+
+    /**
+     * Opens the task group for the next phase of a session and makes it the target of
+     * {@link #stopTest(TestSession)}.
+     * @param session The session entering the phase.
+     * @param name    The phase name used, with the session id, to label the group's threads.
+     * @return The new task group.
+     */
+    private NetworkTaskExecutor.TaskGroup startTaskGroup(TestSession session, String name) {
+        NetworkTaskExecutor.TaskGroup tasks = taskExecutor.newGroup(name + "-" + session.getId());
+        session.attachTasks(tasks);
+        return tasks;
+    }
+
+    /**
+     * Formats a socket address as {@code ip:port}, without triggering a reverse DNS lookup.
+     */
+    private static String formatAddress(InetSocketAddress address) {
+        InetAddress ip = address.getAddress();
+        return (ip != null ? ip.getHostAddress() : address.getHostString()) + ":" + address.getPort();
+    }
+
+    /**
+     * Resolves the network interface that owns a local address.
+     * @param local The local end of a test connection, possibly {@code null}.
+     * @return The interface's display name, or {@code null} if it cannot be determined.
+     */
+    private static String describeInterface(InetSocketAddress local) {
+        if (local == null || local.getAddress() == null) return null;
+        try {
+            NetworkInterface ni = NetworkInterface.getByInetAddress(local.getAddress());
+            return ni != null ? ni.getDisplayName() : null;
+        } catch (SocketException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Looks up a registered backend by name.
+     * @param name The backend name, e.g. "cloudflare" or "loopback".
+     * @return The matching backend.
+     * @throws IllegalArgumentException If no backend with that name is registered.
+     */
+    public SpeedTestBackend getBackend(String name) {
+        return backends.stream()
+                .filter(backend -> backend.getName().equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown speed test backend: " + name));
+    }
+
+    /**
+     * @return The backend selected through {@code netpulse.backend}.
+     */
+    public SpeedTestBackend getActiveBackend() {
+        return getBackend(backendName);
+    }
+
+    /**
+     * Helper method to mark the session as failed and dispatch error messages to the UI thread.
+     */
+    private void handleError(TestSession session, TestCallback callback, String msg) {
+        endSession(session, TestSession.Phase.FAILED);
         Platform.runLater(() -> callback.onError(msg));
     }
 
     /**
-     * Forces all active network calls and sockets to stop immediately.
-     * Resets internal flags to prevent further data sampling or UI updates.
+     * Moves a session into a terminal state and forgets it.
+     */
+    private void endSession(TestSession session, TestSession.Phase terminal) {
+        session.finish(terminal);
+        sessions.remove(session.getId());
+    }
+
+    /**
+     * Forces the network calls and tasks of one session to stop immediately.
+     * Other sessions, such as a concurrent background test, keep running.
+     * @param session The session to cancel.
+     */
+    public void stopTest(TestSession session) {
+        session.cancel();
+        sessions.remove(session.getId());
+    }
+
+    /**
+     * Stops every running session.
      */
     public void stopTest() {
-        isCancelled = true;
-        if (activeOkCall != null) activeOkCall.cancel();
-        if (speedTestSocket != null) speedTestSocket.forceStopTask();
+        sessions.values().forEach(this::stopTest);
     }
 
     /**
-     * Persists the results of a completed speed test session to the local database.
-     * @param dl The final average download speed in Megabits per second.
-     * @param ul The final average upload speed in Megabits per second.
+     * Persists the results of a completed speed test session to the local database,
+     * including the compact sample histogram of each phase, the idle and loaded latency and the bufferbloat grade.
+     * The raw samples of both phases go to the trace store under the generated id.
+     * Completes the session. The row is written behind by the {@link ResultWriter}, so this returns without
+     * waiting for the database.
+     * @param session A session whose download and upload phases have both finished.
+     * @return A future completed with the saved entity once it is committed.
+     * @throws IllegalStateException If either throughput phase has not produced a result.
      */
-    public void saveResult(double dl, double ul) {
+    public CompletableFuture<SpeedTestResult> saveResult(TestSession session) {
+        ThroughputResult download = session.getDownload();
+        ThroughputResult upload = session.getUpload();
+        LatencyResult latency = session.getLatency();
+        if (download == null || upload == null) {
+            throw new IllegalStateException("Session " + session.getId() + " has no complete download and upload result");
+        }
+        endSession(session, TestSession.Phase.COMPLETED);
+
         SpeedTestResult result = new SpeedTestResult();
-        result.setDownloadMbps(dl);
-        result.setUploadMbps(ul);
+        result.setDownloadMbps(download.getAverageMbps());
+        result.setUploadMbps(upload.getAverageMbps());
+        result.setDownloadHistogram(download.getHistogram().encode());
+        result.setUploadHistogram(upload.getHistogram().encode());
+        result.setDownloadPeakMbps(download.getPeakSustainedMbps());
+        result.setUploadPeakMbps(upload.getPeakSustainedMbps());
+        result.setDownloadRampUpMs(download.getRampUpMs());
+        result.setUploadRampUpMs(upload.getRampUpMs());
+        result.setDownloadBytes(download.getTotalBytes());
+        result.setUploadBytes(upload.getTotalBytes());
+        result.setDownloadDurationMs(download.getDurationMs());
+        result.setUploadDurationMs(upload.getDurationMs());
+        result.setDownloadStreams(download.getStreams());
+        result.setUploadStreams(upload.getStreams());
+        result.setBackend(session.getBackend().getName());
+        if (latency != null && isLost(latency)) {
+            result.setProbeLossPercent(latency.getLossPercent());
+            result.setNetworkInterface(describeInterface(latency.getLocalAddress()));
+        } else if (latency != null) {
+            result.setLatencyMinMs(latency.getMinMs());
+            result.setLatencyAvgMs(latency.getAvgMs());
+            result.setLatencyP95Ms(latency.getP95Ms());
+            result.setJitterMs(latency.getJitterMs());
+            result.setProbeLossPercent(latency.getLossPercent());
+            result.setDnsMs(latency.getDnsMs());
+            result.setConnectMs(latency.getConnectMs());
+            result.setTlsMs(latency.getTlsMs());
+            if (latency.getServerAddress() != null) result.setServerAddress(formatAddress(latency.getServerAddress()));
+            result.setNetworkInterface(describeInterface(latency.getLocalAddress()));
+        }
+        LatencyResult downloadLatency = download.getLoadedLatency();
+        // A phase whose loaded probes were all lost has no figures, not a 0 ms latency
+        if (downloadLatency != null && !isLost(downloadLatency)) {
+            result.setDownloadLatencyMs(downloadLatency.getAvgMs());
+            result.setDownloadJitterMs(downloadLatency.getJitterMs());
+        }
+        LatencyResult uploadLatency = upload.getLoadedLatency();
+        if (uploadLatency != null && !isLost(uploadLatency)) {
+            result.setUploadLatencyMs(uploadLatency.getAvgMs());
+            result.setUploadJitterMs(uploadLatency.getJitterMs());
+        }
+        result.setBufferbloatGrade(gradeBufferbloat(latency, download, upload));
         result.setTimestamp(LocalDateTime.now());
-        repository.save(result);
+        return resultWriter.submit(result, download.getTrace(), upload.getTrace());
     }
 }
\ No newline at end of file
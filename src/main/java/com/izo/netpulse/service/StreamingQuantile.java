@@ -0,0 +1,101 @@
+package com.izo.netpulse.service;
+
+import java.util.Arrays;
+
+/**
+ * Constant-memory streaming quantile estimator based on the P² algorithm (Jain &amp; Chlamtac).
+ * <p>Five markers track the minimum, the target quantile, two intermediate quantiles and the
+ * maximum. Each new observation adjusts the markers with a piecewise-parabolic prediction, so
+ * the estimate is updated in O(1) without storing or sorting samples and without allocating.</p>
+ */
+public final class StreamingQuantile {
+
+    private final double quantile;
+    private final double[] heights = new double[5];
+    private final int[] positions = new int[5];
+    private final double[] desired = new double[5];
+    private final double[] increments;
+    private final double[] scratch = new double[5];
+    private long count;
+
+    /**
+     * @param quantile The quantile to estimate, between 0 and 1 (e.g. {@code 0.9} for p90).
+     */
+    public StreamingQuantile(double quantile) {
+        this.quantile = quantile;
+        this.increments = new double[]{0, quantile / 2, quantile, (1 + quantile) / 2, 1};
+    }
+
+    /**
+     * Adds an observation to the estimate.
+     * @param value The observed value.
+     */
+    public void add(double value) {
+        if (count < 5) {
+            heights[(int) count++] = value;
+            if (count == 5) initialiseMarkers();
+            return;
+        }
+
+        int cell;
+        if (value < heights[0]) {
+            heights[0] = value;
+            cell = 0;
+        } else if (value >= heights[4]) {
+            heights[4] = value;
+            cell = 3;
+        } else {
+            cell = 0;
+            while (value >= heights[cell + 1]) cell++;
+        }
+
+        for (int i = cell + 1; i < 5; i++) positions[i]++;
+        for (int i = 0; i < 5; i++) desired[i] += increments[i];
+
+        for (int i = 1; i <= 3; i++) {
+            double offset = desired[i] - positions[i];
+            if ((offset >= 1 && positions[i + 1] - positions[i] > 1)
+                    || (offset <= -1 && positions[i - 1] - positions[i] < -1)) {
+                int step = offset >= 0 ? 1 : -1;
+                double predicted = parabolic(i, step);
+                heights[i] = heights[i - 1] < predicted && predicted < heights[i + 1] ? predicted : linear(i, step);
+                positions[i] += step;
+            }
+        }
+        count++;
+    }
+
+    /**
+     * @return The current estimate, exact while fewer than five values have been observed, or {@code 0} if none.
+     */
+    public double get() {
+        if (count == 0) return 0.0;
+        if (count >= 5) return heights[2];
+
+        int n = (int) count;
+        System.arraycopy(heights, 0, scratch, 0, n);
+        Arrays.sort(scratch, 0, n);
+        return scratch[(int) Math.round(quantile * (n - 1))];
+    }
+
+    private void initialiseMarkers() {
+        Arrays.sort(heights);
+        for (int i = 0; i < 5; i++) positions[i] = i;
+        desired[0] = 0;
+        desired[1] = 2 * quantile;
+        desired[2] = 4 * quantile;
+        desired[3] = 2 + 2 * quantile;
+        desired[4] = 4;
+    }
+
+    private double parabolic(int i, int step) {
+        double span = positions[i + 1] - positions[i - 1];
+        double upper = (positions[i] - positions[i - 1] + step) * (heights[i + 1] - heights[i]) / (positions[i + 1] - positions[i]);
+        double lower = (positions[i + 1] - positions[i] - step) * (heights[i] - heights[i - 1]) / (positions[i] - positions[i - 1]);
+        return heights[i] + step / span * (upper + lower);
+    }
+
+    private double linear(int i, int step) {
+        return heights[i] + step * (heights[i + step] - heights[i]) / (positions[i + step] - positions[i]);
+    }
+}
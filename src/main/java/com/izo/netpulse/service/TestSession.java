@@ -0,0 +1,167 @@
+package com.izo.netpulse.service;
+
+import com.izo.netpulse.service.backend.SpeedTestBackend;
+import lombok.Getter;
+import okhttp3.Call;
+
+import java.net.http.HttpClient;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A single run of the speed test sequence with its own cancellation token, network resources,
+ * phase state and results.
+ * <p>Sessions are created by {@link SpeedTestService#newSession()} and passed to every phase of
+ * the run. Because nothing about a run is kept on the singleton service, several sessions
+ * (e.g. a manual test and a background test, or tests against different backends) can run at
+ * the same time, and cancelling one never touches the others.</p>
+ * <p>Phases only move forward ({@code CREATED → LATENCY → DOWNLOAD → UPLOAD → COMPLETED}, any of
+ * which may be skipped) and end in exactly one terminal state.</p>
+ */
+public final class TestSession {
+
+    /**
+     * Lifecycle of a session. Declaration order is the only allowed direction of travel.
+     */
+    public enum Phase {
+        CREATED, LATENCY, DOWNLOAD, UPLOAD, COMPLETED, FAILED, CANCELLED;
+
+        /** @return {@code true} for states a session can never leave. */
+        public boolean isTerminal() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+
+    /** Sequential identifier of the session, used in thread names and logs. */
+    @Getter
+    private final long id = NEXT_ID.getAndIncrement();
+
+    /** The backend every phase of this session runs against. */
+    @Getter
+    private final SpeedTestBackend backend;
+
+    private final AtomicReference<Phase> phase = new AtomicReference<>(Phase.CREATED);
+    private final List<Call> activeCalls = new CopyOnWriteArrayList<>();
+    private volatile boolean cancelled = false;
+    private volatile HttpClient uploadClient;
+    private volatile NetworkTaskExecutor.TaskGroup tasks;
+
+    /** Byte counters of the phase that is currently transferring data, or {@code null} between phases. */
+    @Getter
+    private volatile TransferCounters counters;
+
+    /** The idle latency measured by this session, or {@code null} if not measured yet. */
+    @Getter
+    private volatile LatencyResult latency;
+
+    /** The download result of this session, or {@code null} if the phase has not completed. */
+    @Getter
+    private volatile ThroughputResult download;
+
+    /** The upload result of this session, or {@code null} if the phase has not completed. */
+    @Getter
+    private volatile ThroughputResult upload;
+
+    TestSession(SpeedTestBackend backend) {
+        this.backend = backend;
+    }
+
+    /** @return The phase the session is currently in. */
+    public Phase getPhase() {
+        return phase.get();
+    }
+
+    /** @return {@code true} once the session has been cancelled. */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Moves the session into the next phase.
+     * @param next The phase to enter.
+     * @return {@code false} if the session was cancelled in the meantime and the phase must not start.
+     * @throws IllegalStateException If the transition goes backwards or leaves a terminal state.
+     */
+    boolean enter(Phase next) {
+        while (true) {
+            Phase current = phase.get();
+            if (current == Phase.CANCELLED) return false;
+            if (current.isTerminal() || next.ordinal() <= current.ordinal()) {
+                throw new IllegalStateException("Session " + id + " cannot move from " + current + " to " + next);
+            }
+            if (phase.compareAndSet(current, next)) return true;
+        }
+    }
+
+    /**
+     * Ends the session in a terminal state unless it already reached one.
+     * @param terminal {@link Phase#COMPLETED} or {@link Phase#FAILED}.
+     */
+    void finish(Phase terminal) {
+        phase.getAndUpdate(current -> current.isTerminal() ? current : terminal);
+        counters = null;
+    }
+
+    /**
+     * Cancels the session: interrupts its tasks, aborts its in-flight calls and moves it to
+     * {@link Phase#CANCELLED}. Has no effect on other sessions.
+     */
+    public void cancel() {
+        cancelled = true;
+        phase.getAndUpdate(current -> current.isTerminal() ? current : Phase.CANCELLED);
+        activeCalls.forEach(Call::cancel);
+        HttpClient client = uploadClient;
+        if (client != null) client.shutdownNow();
+        NetworkTaskExecutor.TaskGroup group = tasks;
+        if (group != null) group.cancel();
+    }
+
+    /**
+     * Makes a task group the one interrupted by {@link #cancel()}.
+     */
+    void attachTasks(NetworkTaskExecutor.TaskGroup group) {
+        tasks = group;
+        if (cancelled) group.cancel();
+    }
+
+    /**
+     * Registers an in-flight call so that {@link #cancel()} can abort it.
+     */
+    void trackCall(Call call) {
+        activeCalls.add(call);
+        if (cancelled) call.cancel();
+    }
+
+    /**
+     * Aborts every tracked call, e.g. once a phase's test window closes, and forgets them.
+     */
+    void cancelCalls() {
+        activeCalls.forEach(Call::cancel);
+        activeCalls.clear();
+    }
+
+    void attachUploadClient(HttpClient client) {
+        uploadClient = client;
+        if (cancelled) client.shutdownNow();
+    }
+
+    void setCounters(TransferCounters counters) {
+        this.counters = counters;
+    }
+
+    void setLatency(LatencyResult latency) {
+        this.latency = latency;
+    }
+
+    void setDownload(ThroughputResult download) {
+        this.download = download;
+    }
+
+    void setUpload(ThroughputResult upload) {
+        this.upload = upload;
+    }
+}
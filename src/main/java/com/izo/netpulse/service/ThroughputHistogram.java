@@ -0,0 +1,105 @@
+package com.izo.netpulse.service;
+
+/**
+ * Fixed-bucket histogram of the instantaneous throughput samples of a single test.
+ * <p>Buckets are logarithmic with four buckets per doubling, starting at 0.1 Mbps, so the same
+ * layout resolves both a 2 Mbps DSL line and a 10 Gbps fibre link with roughly 19% relative width.
+ * Bucket 0 collects everything below 0.1 Mbps (stalls) and the last bucket everything above
+ * ~100 Gbps. Recording a sample is allocation-free.</p>
+ * <p>The compact form used for persistence lists only non-empty buckets as
+ * {@code index:count} pairs, e.g. {@code "40:3,41:12,42:5"}.</p>
+ */
+public final class ThroughputHistogram {
+
+    /** Lower bound of bucket 1 in Mbps; anything slower falls into bucket 0. */
+    public static final double MIN_MBPS = 0.1;
+
+    /** Number of buckets per doubling of throughput. */
+    public static final int BUCKETS_PER_OCTAVE = 4;
+
+    /** Total number of buckets, covering 0.1 Mbps up to ~100 Gbps. */
+    public static final int BUCKET_COUNT = 1 + 20 * BUCKETS_PER_OCTAVE;
+
+    private static final double LOG_2 = Math.log(2);
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long total;
+
+    /**
+     * Adds a sample to its bucket.
+     * @param mbps The instantaneous rate in Megabits per second.
+     */
+    public void record(double mbps) {
+        counts[bucketOf(mbps)]++;
+        total++;
+    }
+
+    /**
+     * @param mbps A rate in Megabits per second.
+     * @return The index of the bucket that holds the rate.
+     */
+    public static int bucketOf(double mbps) {
+        if (!(mbps >= MIN_MBPS)) return 0;
+        int index = 1 + (int) Math.floor(Math.log(mbps / MIN_MBPS) / LOG_2 * BUCKETS_PER_OCTAVE);
+        return Math.min(index, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * @param bucket A bucket index.
+     * @return The inclusive lower bound of the bucket in Mbps.
+     */
+    public static double lowerBound(int bucket) {
+        if (bucket <= 0) return 0.0;
+        return MIN_MBPS * Math.pow(2, (bucket - 1) / (double) BUCKETS_PER_OCTAVE);
+    }
+
+    /**
+     * @param bucket A bucket index.
+     * @return The number of samples recorded in that bucket.
+     */
+    public long getCount(int bucket) {
+        return counts[bucket];
+    }
+
+    /** @return The number of samples recorded across all buckets. */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Serialises the non-empty buckets into the compact persistence form.
+     * @return The sparse encoding, or an empty string if no samples were recorded.
+     */
+    public String encode() {
+        StringBuilder encoded = new StringBuilder();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts[i] == 0) continue;
+            if (!encoded.isEmpty()) encoded.append(',');
+            encoded.append(i).append(':').append(counts[i]);
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Restores a histogram from its compact form. Malformed or out-of-range entries are skipped.
+     * @param encoded The sparse encoding produced by {@link #encode()}, possibly {@code null}.
+     * @return The decoded histogram.
+     */
+    public static ThroughputHistogram decode(String encoded) {
+        ThroughputHistogram histogram = new ThroughputHistogram();
+        if (encoded == null || encoded.isBlank()) return histogram;
+
+        for (String entry : encoded.split(",")) {
+            int separator = entry.indexOf(':');
+            if (separator < 0) continue;
+            try {
+                int bucket = Integer.parseInt(entry.substring(0, separator).trim());
+                long count = Long.parseLong(entry.substring(separator + 1).trim());
+                if (bucket < 0 || bucket >= BUCKET_COUNT || count < 0) continue;
+                histogram.counts[bucket] += count;
+                histogram.total += count;
+            } catch (NumberFormatException ignored) {}
+        }
+        return histogram;
+    }
+}
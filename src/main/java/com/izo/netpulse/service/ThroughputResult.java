@@ -0,0 +1,59 @@
+package com.izo.netpulse.service;
+
+import com.izo.netpulse.model.SampleTrace;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Summary of a single finished download or upload test, delivered through
+ * {@link SpeedTestService.TestCallback#onResult(ThroughputResult)}.
+ */
+@Value
+@Builder
+public class ThroughputResult {
+
+    /** The reported speed of the test: the steady-state mean after the slow-start warm-up, in Megabits per second. */
+    double averageMbps;
+
+    /** The best throughput sustained over one second, in Mbps. */
+    double peakSustainedMbps;
+
+    /** The mean throughput over the whole test, warm-up included, in Mbps. */
+    double overallMbps;
+
+    /** The length of the warm-up excluded from {@link #averageMbps}, in milliseconds. */
+    long rampUpMs;
+
+    /** The estimated median of the instantaneous samples, in Mbps. */
+    double p50Mbps;
+
+    /** The estimated 90th percentile of the instantaneous samples, in Mbps. */
+    double p90Mbps;
+
+    /** The estimated 99th percentile of the instantaneous samples, in Mbps. */
+    double p99Mbps;
+
+    /** The highest instantaneous sample, in Mbps. */
+    double maxMbps;
+
+    /** The distribution of the instantaneous samples taken during the test. */
+    ThroughputHistogram histogram;
+
+    /** Every instantaneous sample of the test in order, kept for the trace store. */
+    SampleTrace trace;
+
+    /** The total number of payload bytes moved across all streams. */
+    long totalBytes;
+
+    /** How long the test actually ran, in milliseconds. */
+    long durationMs;
+
+    /** The number of concurrent streams used by the end of the test. */
+    int streams;
+
+    /** Whether the test stopped early because the throughput estimate converged. */
+    boolean converged;
+
+    /** Latency measured by probes running alongside the test, or {@code null} if no probe completed in time. */
+    LatencyResult loadedLatency;
+}
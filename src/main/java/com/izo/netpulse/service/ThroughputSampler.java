@@ -0,0 +1,97 @@
+package com.izo.netpulse.service;
+
+/**
+ * Allocation-free accumulator for the instantaneous throughput samples of a single test.
+ * <p>A primitive ring buffer with a running sum provides the moving average in O(1), while
+ * {@link StreamingQuantile} estimators and a {@link ThroughputHistogram} track the distribution
+ * of every sample. Nothing is
+ * boxed or allocated once the sampler is constructed, so it is safe to call on every tick.</p>
+ */
+public final class ThroughputSampler {
+
+    private final double[] window;
+    private int windowSize;
+    private int nextSlot;
+    private double windowSum;
+
+    private long sampleCount;
+    private double totalSum;
+    private double max;
+
+    private final StreamingQuantile p50 = new StreamingQuantile(0.50);
+    private final StreamingQuantile p90 = new StreamingQuantile(0.90);
+    private final StreamingQuantile p99 = new StreamingQuantile(0.99);
+    private final ThroughputHistogram histogram = new ThroughputHistogram();
+
+    /**
+     * @param windowSize The number of most recent samples covered by the moving average.
+     */
+    public ThroughputSampler(int windowSize) {
+        this.window = new double[Math.max(1, windowSize)];
+    }
+
+    /**
+     * Records a sample and returns the updated moving average.
+     * @param mbps The instantaneous rate of the latest sampling interval.
+     * @return The mean of the most recent samples in the window.
+     */
+    public double add(double mbps) {
+        if (windowSize == window.length) {
+            windowSum -= window[nextSlot];
+        } else {
+            windowSize++;
+        }
+        window[nextSlot] = mbps;
+        windowSum += mbps;
+        nextSlot = (nextSlot + 1) % window.length;
+
+        sampleCount++;
+        totalSum += mbps;
+        max = Math.max(max, mbps);
+        p50.add(mbps);
+        p90.add(mbps);
+        p99.add(mbps);
+        histogram.record(mbps);
+        return getMovingAverage();
+    }
+
+    /** @return The mean of the samples currently in the window, or {@code 0} if empty. */
+    public double getMovingAverage() {
+        return windowSize == 0 ? 0.0 : windowSum / windowSize;
+    }
+
+    /** @return The mean of every sample recorded so far. */
+    public double getMean() {
+        return sampleCount == 0 ? 0.0 : totalSum / sampleCount;
+    }
+
+    /** @return The highest sample recorded so far. */
+    public double getMax() {
+        return max;
+    }
+
+    /** @return The estimated median sample. */
+    public double getP50() {
+        return p50.get();
+    }
+
+    /** @return The estimated 90th percentile sample. */
+    public double getP90() {
+        return p90.get();
+    }
+
+    /** @return The estimated 99th percentile sample. */
+    public double getP99() {
+        return p99.get();
+    }
+
+    /** @return The histogram of every sample recorded so far. */
+    public ThroughputHistogram getHistogram() {
+        return histogram;
+    }
+
+    /** @return The number of samples recorded so far. */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+}
@@ -0,0 +1,70 @@
+package com.izo.netpulse.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free byte accounting shared by the concurrent streams of a single throughput test.
+ * Each stream owns one slot that only it writes to, while the sampling thread reads every
+ * slot to derive both the aggregate rate and the per-stream breakdown.
+ */
+public final class TransferCounters {
+
+    private final AtomicLongArray streamBytes;
+    private final AtomicInteger openedStreams = new AtomicInteger(0);
+
+    /**
+     * Creates counters with room for a fixed maximum number of streams.
+     * @param maxStreams The upper bound of streams that may be opened during the test.
+     */
+    public TransferCounters(int maxStreams) {
+        this.streamBytes = new AtomicLongArray(Math.max(1, maxStreams));
+    }
+
+    /**
+     * Reserves the next free slot for a newly started stream.
+     * @return The slot index to pass to {@link #add(int, long)}, or {@code -1} if all slots are taken.
+     */
+    public int openStream() {
+        int slot = openedStreams.getAndIncrement();
+        if (slot >= streamBytes.length()) {
+            openedStreams.decrementAndGet();
+            return -1;
+        }
+        return slot;
+    }
+
+    /**
+     * Records bytes transferred by a single stream.
+     * @param stream The slot index returned by {@link #openStream()}.
+     * @param bytes  The number of bytes moved since the last call.
+     */
+    public void add(int stream, long bytes) {
+        streamBytes.getAndAdd(stream, bytes);
+    }
+
+    /**
+     * @param stream The slot index of the stream.
+     * @return The total bytes transferred by that stream so far.
+     */
+    public long streamTotal(int stream) {
+        return streamBytes.get(stream);
+    }
+
+    /**
+     * Sums every opened slot. The result is a consistent-enough snapshot for rate sampling,
+     * as each slot only ever grows.
+     * @return The total bytes transferred across all streams.
+     */
+    public long total() {
+        long sum = 0;
+        int opened = streamCount();
+        for (int i = 0; i < opened; i++) sum += streamBytes.get(i);
+        return sum;
+    }
+
+    /** @return The number of streams opened so far. */
+    public int streamCount() {
+        return Math.min(openedStreams.get(), streamBytes.length());
+    }
+}
@@ -0,0 +1,134 @@
+package com.izo.netpulse.service;
+
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * Streaming upload body that cycles through a small, fixed set of pre-filled chunks
+ * instead of materialising the whole payload on the heap.
+ * <p>The chunks are filled once with pseudo-random bytes so that middleboxes cannot compress
+ * the stream, and are shared read-only by every publisher. Peak memory therefore stays at
+ * {@code CHUNK_COUNT * CHUNK_SIZE} (1 MB) no matter how long or how fast the upload runs.</p>
+ */
+public final class UploadPayloadPublisher implements HttpRequest.BodyPublisher {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int CHUNK_COUNT = 16;
+    private static final ByteBuffer[] CHUNKS = createChunks();
+
+    private final long maxBytes;
+    private final long deadlineNanos;
+    private final BooleanSupplier cancelled;
+    private final LongConsumer onBytesSent;
+
+    /**
+     * Creates a publisher that ends the body once either cap is reached or the test is cancelled.
+     * @param maxBytes       The maximum number of bytes to emit.
+     * @param deadlineNanos  The {@link System#nanoTime()} value after which no further chunks are emitted.
+     * @param cancelled      Supplier polled before every chunk to detect cancellation.
+     * @param onBytesSent    Receives the size of every chunk handed to the HTTP client.
+     */
+    public UploadPayloadPublisher(long maxBytes, long deadlineNanos, BooleanSupplier cancelled, LongConsumer onBytesSent) {
+        this.maxBytes = maxBytes;
+        this.deadlineNanos = deadlineNanos;
+        this.cancelled = cancelled;
+        this.onBytesSent = onBytesSent;
+    }
+
+    /**
+     * The body length is unknown up front because it is capped by time, so the request is sent chunked.
+     * @return Always {@code -1}.
+     */
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        subscriber.onSubscribe(new ChunkSubscription(subscriber));
+    }
+
+    /**
+     * Fills the shared chunk pool with incompressible data.
+     * @return Read-only views of the pre-filled chunks.
+     */
+    private static ByteBuffer[] createChunks() {
+        SplittableRandom random = new SplittableRandom();
+        ByteBuffer[] chunks = new ByteBuffer[CHUNK_COUNT];
+        for (int i = 0; i < CHUNK_COUNT; i++) {
+            byte[] bytes = new byte[CHUNK_SIZE];
+            random.nextBytes(bytes);
+            chunks[i] = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+        return chunks;
+    }
+
+    /**
+     * Demand-driven subscription that emits duplicates of the shared chunks.
+     * The work-in-progress counter serialises emission, so re-entrant {@link #request(long)}
+     * calls made from inside {@code onNext} never recurse.
+     */
+    private final class ChunkSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean done;
+        private long bytesSent;
+        private int nextChunk;
+
+        private ChunkSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                done = true;
+                subscriber.onError(new IllegalArgumentException("Non-positive request: " + n));
+                return;
+            }
+            demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) return;
+
+            int missed = 1;
+            do {
+                while (!done && demand.get() > 0) {
+                    if (cancelled.getAsBoolean() || bytesSent >= maxBytes
+                            || System.nanoTime() - deadlineNanos >= 0) {
+                        done = true;
+                        subscriber.onComplete();
+                        break;
+                    }
+
+                    ByteBuffer chunk = CHUNKS[nextChunk].duplicate();
+                    nextChunk = (nextChunk + 1) % CHUNK_COUNT;
+                    long remaining = maxBytes - bytesSent;
+                    if (remaining < chunk.remaining()) chunk.limit((int) remaining);
+
+                    int size = chunk.remaining();
+                    bytesSent += size;
+                    demand.decrementAndGet();
+                    onBytesSent.accept(size);
+                    subscriber.onNext(chunk);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
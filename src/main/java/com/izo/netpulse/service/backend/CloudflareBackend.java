@@ -0,0 +1,61 @@
+package com.izo.netpulse.service.backend;
+
+import okhttp3.Request;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+
+/**
+ * Backend targeting Cloudflare's public speed test endpoints.
+ * Requests carry browser-like headers because the endpoints reject obvious non-browser clients.
+ */
+@Component
+public class CloudflareBackend implements SpeedTestBackend {
+
+    public static final String NAME = "cloudflare";
+
+    private static final String BASE_URL = "https://speed.cloudflare.com";
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:147.0) Gecko/20100101 Firefox/147.0";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Request downloadRequest(long bytes) {
+        return new Request.Builder()
+                .url(BASE_URL + "/__down?bytes=" + bytes)
+                .addHeader("User-Agent", USER_AGENT)
+                .addHeader("Accept", "*/*")
+                .addHeader("Referer", BASE_URL + "/")
+                .addHeader("Sec-Fetch-Mode", "cors")
+                .addHeader("Sec-Fetch-Site", "same-origin")
+                .build();
+    }
+
+    @Override
+    public HttpRequest.Builder uploadRequest() {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(BASE_URL + "/__up"))
+                .header("User-Agent", USER_AGENT)
+                .header("Referer", BASE_URL + "/")
+                .header("Origin", BASE_URL)
+                .header("Sec-Fetch-Mode", "cors")
+                .header("Sec-Fetch-Site", "same-origin");
+    }
+
+    /**
+     * Probes the same edge that serves the throughput tests with a zero-byte download,
+     * so latency and throughput describe the same network path.
+     */
+    @Override
+    public Request latencyRequest() {
+        return new Request.Builder()
+                .url(BASE_URL + "/__down?bytes=0")
+                .addHeader("User-Agent", USER_AGENT)
+                .addHeader("Referer", BASE_URL + "/")
+                .build();
+    }
+}
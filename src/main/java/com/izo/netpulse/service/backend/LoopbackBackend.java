@@ -0,0 +1,47 @@
+package com.izo.netpulse.service.backend;
+
+import lombok.RequiredArgsConstructor;
+import okhttp3.Request;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+
+/**
+ * Backend served by the bundled {@link LoopbackSpeedServer}.
+ * Measures the client's own ceiling without any network in the path, which makes it
+ * suitable for offline benchmarking and regression tests of the engine itself.
+ */
+@Component
+@RequiredArgsConstructor
+public class LoopbackBackend implements SpeedTestBackend {
+
+    public static final String NAME = "loopback";
+
+    private final LoopbackSpeedServer server;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Request downloadRequest(long bytes) {
+        return new Request.Builder()
+                .url(server.getBaseUrl() + LoopbackSpeedServer.DOWNLOAD_PATH + "?bytes=" + bytes)
+                .build();
+    }
+
+    @Override
+    public HttpRequest.Builder uploadRequest() {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(server.getBaseUrl() + LoopbackSpeedServer.UPLOAD_PATH));
+    }
+
+    @Override
+    public Request latencyRequest() {
+        return new Request.Builder()
+                .url(server.getBaseUrl() + LoopbackSpeedServer.PING_PATH)
+                .build();
+    }
+}
@@ -0,0 +1,160 @@
+package com.izo.netpulse.service.backend;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Minimal HTTP server bound to the loopback interface that mimics the download, upload and
+ * latency endpoints of a public speed test service.
+ * <p>The server is started lazily on first use so that it costs nothing unless the
+ * {@link LoopbackBackend} is selected. Each exchange runs on its own virtual thread, and
+ * download bodies are written from a single shared pre-filled buffer, so the server can
+ * saturate several Gbps over loopback without allocating per request.</p>
+ */
+@Slf4j
+@Component
+public class LoopbackSpeedServer {
+
+    static final String DOWNLOAD_PATH = "/__down";
+    static final String UPLOAD_PATH = "/__up";
+    static final String PING_PATH = "/ping";
+
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final byte[] PAYLOAD = createPayload();
+
+    private final int configuredPort;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param configuredPort The port to bind, or {@code 0} to pick a free ephemeral port.
+     */
+    public LoopbackSpeedServer(@Value("${netpulse.loopback.port:0}") int configuredPort) {
+        this.configuredPort = configuredPort;
+    }
+
+    /**
+     * Returns the base URL of the server, starting it if it is not running yet.
+     * @return The base URL, e.g. {@code http://127.0.0.1:51234}.
+     */
+    public synchronized String getBaseUrl() {
+        if (server == null) start();
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Binds the server to the loopback address and registers the endpoint handlers.
+     */
+    private void start() {
+        try {
+            executor = Executors.newVirtualThreadPerTaskExecutor();
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), configuredPort), 128);
+            server.createContext(DOWNLOAD_PATH, this::handleDownload);
+            server.createContext(UPLOAD_PATH, this::handleUpload);
+            server.createContext(PING_PATH, this::handlePing);
+            server.setExecutor(executor);
+            server.start();
+            log.info("Loopback speed test server listening on port {}", server.getAddress().getPort());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start loopback speed test server", e);
+        }
+    }
+
+    /**
+     * Streams the requested number of bytes ({@code ?bytes=N}) from the shared payload buffer.
+     */
+    private void handleDownload(HttpExchange exchange) throws IOException {
+        long bytes = parseBytes(exchange.getRequestURI().getRawQuery());
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        exchange.sendResponseHeaders(200, bytes == 0 ? -1 : bytes);
+
+        try (OutputStream os = exchange.getResponseBody()) {
+            long remaining = bytes;
+            while (remaining > 0) {
+                int len = (int) Math.min(remaining, CHUNK_SIZE);
+                os.write(PAYLOAD, 0, len);
+                remaining -= len;
+            }
+        } catch (IOException e) {
+            // The client closes the connection as soon as its test window ends
+        }
+    }
+
+    /**
+     * Drains and discards the request body, then replies with an empty 200.
+     */
+    private void handleUpload(HttpExchange exchange) throws IOException {
+        try (InputStream is = exchange.getRequestBody()) {
+            byte[] buffer = new byte[64 * 1024];
+            while (is.read(buffer) != -1) {
+                // discard
+            }
+        } catch (IOException e) {
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(200, -1);
+        exchange.close();
+    }
+
+    /**
+     * Replies immediately with an empty 204 for latency probing.
+     */
+    private void handlePing(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(204, -1);
+        exchange.close();
+    }
+
+    /**
+     * Extracts the {@code bytes} query parameter.
+     * @param query The raw query string, possibly {@code null}.
+     * @return The requested size, defaulting to 100 MB.
+     */
+    private static long parseBytes(String query) {
+        if (query != null) {
+            for (String param : query.split("&")) {
+                if (param.startsWith("bytes=")) {
+                    try {
+                        return Math.max(0, Long.parseLong(param.substring(6)));
+                    } catch (NumberFormatException ignored) {}
+                }
+            }
+        }
+        return 100_000_000L;
+    }
+
+    /**
+     * @return A buffer of pseudo-random bytes shared by every download response.
+     */
+    private static byte[] createPayload() {
+        byte[] payload = new byte[CHUNK_SIZE];
+        new SplittableRandom().nextBytes(payload);
+        return payload;
+    }
+
+    /**
+     * Stops the server, if it was ever started, when the Spring context closes.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.izo.netpulse.service.backend;
+
+import okhttp3.Request;
+
+import java.net.http.HttpRequest;
+
+/**
+ * Service provider interface describing the server side of a speed test.
+ * Implementations supply the endpoints and any headers a particular provider expects,
+ * keeping the measurement engine in {@link com.izo.netpulse.service.SpeedTestService} provider-agnostic.
+ */
+public interface SpeedTestBackend {
+
+    /**
+     * @return The unique name used to select this backend via {@code netpulse.backend}.
+     */
+    String getName();
+
+    /**
+     * Builds the request for a single download stream.
+     * @param bytes The number of bytes the server should send.
+     * @return An OkHttp request whose response body streams the payload.
+     */
+    Request downloadRequest(long bytes);
+
+    /**
+     * Builds the request for a single upload stream. The caller attaches the POST body.
+     * @return A request builder targeting the upload sink.
+     */
+    HttpRequest.Builder uploadRequest();
+
+    /**
+     * Builds the lightweight request used for latency probing.
+     * @return An OkHttp request with an empty or near-empty response.
+     */
+    Request latencyRequest();
+}
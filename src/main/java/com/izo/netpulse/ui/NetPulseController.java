@@ -1,17 +1,31 @@
 package com.izo.netpulse.ui;
 
-import com.izo.netpulse.model.SpeedTestResult;
-import com.izo.netpulse.repository.SpeedRepository;
+import com.izo.netpulse.model.BufferbloatGrade;
+import com.izo.netpulse.model.BucketSize;
+import com.izo.netpulse.model.HistoryBuffer;
+import com.izo.netpulse.model.SampleTrace;
+import com.izo.netpulse.model.TransferDirection;
+import com.izo.netpulse.repository.HistoryBucket;
+import com.izo.netpulse.repository.TraceStore;
 import com.izo.netpulse.service.DiagnosticService;
+import com.izo.netpulse.service.HistoryCache;
+import com.izo.netpulse.service.HistoryFormat;
+import com.izo.netpulse.service.HistoryTransferService;
+import com.izo.netpulse.service.LatencyResult;
+import com.izo.netpulse.service.NetworkTaskExecutor;
 import com.izo.netpulse.service.SpeedFeedbackService;
 import com.izo.netpulse.service.SpeedTestService;
+import com.izo.netpulse.service.TestSession;
+import com.izo.netpulse.service.ThroughputResult;
 import com.izo.netpulse.service.BackgroundMonitorService;
 import com.izo.netpulse.ui.manager.*;
 import com.izo.netpulse.ui.util.AnimationUtility;
+import com.izo.netpulse.ui.util.LttbDownsampler;
 
 import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
+import javafx.scene.Cursor;
 import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.chart.LineChart;
@@ -22,15 +36,23 @@ import javafx.scene.layout.VBox;
 import javafx.scene.shape.Arc;
 import javafx.scene.shape.Circle;
 import javafx.scene.shape.SVGPath;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.util.StringConverter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.io.File;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.format.DateTimeFormatter;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Primary UI Controller for the NetPulse application.
@@ -42,9 +64,12 @@ import java.util.List;
 public class NetPulseController {
 
     private final SpeedTestService speedService;
-    private final SpeedRepository repository;
+    private final HistoryCache historyCache;
     private final SpeedFeedbackService feedbackService;
     private final BackgroundMonitorService monitorService;
+    private final NetworkTaskExecutor taskExecutor;
+    private final TraceStore traceStore;
+    private final HistoryTransferService historyTransferService;
     @Autowired private DiagnosticService diagnosticService;
 
     // UI Logic Managers
@@ -52,6 +77,7 @@ public class NetPulseController {
     private TimeRangeManager timeRangeManager;
     private ThemeManager themeManager;
     private BackgroundMonitorManager monitorManager;
+    private TraceViewManager traceViewManager;
 
     // FXML UI Components
     @FXML private VBox mainContainer;
@@ -69,16 +95,28 @@ public class NetPulseController {
     @FXML private SVGPath maximizeIcon;
     @FXML private Button actionButton;
     @FXML private Button diagButton;
+    @FXML private Button exportHistoryButton;
+    @FXML private Button importHistoryButton;
     @FXML private CheckBox lightModeToggle;
     @FXML private CheckBox backgroundMonitorToggle;
     @FXML private ComboBox<String> monitorIntervalSelector;
 
     // State Variables
     private boolean isTestRunning = false;
-    private double activeMaxSpeed = 250.0;
+    private TestSession activeSession;
+    private volatile double activeMaxSpeed = 250.0;
     private static final double MAX_DOWNLOAD_GAUGE = 250.0;
     private static final double MAX_UPLOAD_GAUGE = 100.0;
 
+    /** Horizontal pixels per drawn history point; LTTB keeps the shape at this density. */
+    private static final int PIXELS_PER_HISTORY_POINT = 2;
+
+    /** Lower bound on the point budget while the chart has not been laid out yet. */
+    private static final int MIN_HISTORY_POINTS = 200;
+
+    private HistoryData historyData;
+    private int renderedPointBudget = -1;
+
     /**
      * Initializes the controller after its root element has been completely processed.
      * Sets up the managers for gauges, history filters, themes, and background monitoring.
@@ -88,10 +126,12 @@ public class NetPulseController {
         gaugeManager = new GaugeManager(progressArc, needleCircle, speedValueLabel);
         timeRangeManager = new TimeRangeManager(timeRangeSelector);
         themeManager = new ThemeManager(mainContainer, lightModeToggle);
+        traceViewManager = new TraceViewManager(mainContainer);
         monitorManager = new BackgroundMonitorManager(monitorService, backgroundMonitorToggle, monitorIntervalSelector, this::refreshHistory);
 
         themeManager.loadSettings();
         monitorManager.loadSettings();
+        historyLineChart.widthProperty().addListener((obs, oldWidth, newWidth) -> renderHistory());
         refreshHistory();
     }
 
@@ -105,7 +145,7 @@ public class NetPulseController {
     }
 
     /**
-     * Initiates the multi-stage speed test sequence starting with Download.
+     * Initiates the multi-stage speed test sequence starting with idle latency, followed by Download.
      * Configures UI state and hooks into the SpeedTestService callbacks.
      */
     private void startTestSequence() {
@@ -114,28 +154,36 @@ public class NetPulseController {
             actionButton.getStyleClass().add("button-cancel");
         }
         prepareUIForDownload();
+        statusLabel.setText("Measuring Latency...");
+        TestSession session = speedService.newSession();
+        activeSession = session;
 
-        speedService.runDownloadTest(new SpeedTestService.TestCallback() {
-            @Override
-            public void onInstantUpdate(double mbps) {
-                Platform.runLater(() -> gaugeManager.updateGauge(mbps, activeMaxSpeed));
-            }
-            @Override
-            public void onComplete(double avgDl) {
-                if (!isTestRunning) return;
-                Platform.runLater(() -> startUploadTransition(avgDl));
-            }
-            @Override
-            public void onError(String msg) { handleTestError(msg); }
+        // Idle latency is measured first, before any test traffic can leave queues behind
+        speedService.measureLatency(session, latency -> {
+            if (!isTestRunning) return;
+            statusLabel.setText(SpeedTestService.isLost(latency) ? "Latency probes lost. Testing Download..." : "Testing Download...");
+            speedService.runDownloadTest(session, new SpeedTestService.TestCallback() {
+                @Override
+                public void onInstantUpdate(double mbps) {
+                    gaugeManager.updateGauge(mbps, activeMaxSpeed);
+                }
+                @Override
+                public void onResult(ThroughputResult download) {
+                    if (!isTestRunning) return;
+                    Platform.runLater(() -> startUploadTransition(session));
+                }
+                @Override
+                public void onError(String msg) { handleTestError(msg); }
+            });
         });
     }
 
     /**
      * Transitions the UI from Download mode to Upload mode.
-     * Resets the gauge and measures latency before initiating the upload test.
-     * @param avgDl The calculated average download speed in Mbps.
+     * Resets the gauge before initiating the upload test.
+     * @param session The session whose latency and download phases have completed.
      */
-    private void startUploadTransition(double avgDl) {
+    private void startUploadTransition(TestSession session) {
         statusLabel.setText("Preparing Upload...");
         Timeline reset = gaugeManager.resetGauge(800);
         reset.setOnFinished(e -> {
@@ -146,65 +194,112 @@ public class NetPulseController {
             progressArc.getStyleClass().add("progress-upload");
             needleCircle.getStyleClass().add("progress-upload-needle");
 
-            speedService.measureLatencyAverage(() -> {
-                if (!isTestRunning) return;
-                statusLabel.setText("Testing Upload... (7s)");
-                speedService.runUploadTest(new SpeedTestService.TestCallback() {
-                    @Override
-                    public void onInstantUpdate(double mbps) {
-                        Platform.runLater(() -> gaugeManager.updateGauge(mbps, activeMaxSpeed));
-                    }
-                    @Override
-                    public void onComplete(double avgUl) {
-                        if (isTestRunning) finalizeFullTest(avgDl, avgUl);
-                    }
-                    @Override
-                    public void onError(String msg) { handleTestError(msg); }
-                });
-            }, () -> handleTestError("Latency Check Failed: No Connection."));
+            statusLabel.setText("Testing Upload...");
+            speedService.runUploadTest(session, new SpeedTestService.TestCallback() {
+                @Override
+                public void onInstantUpdate(double mbps) {
+                    gaugeManager.updateGauge(mbps, activeMaxSpeed);
+                }
+                @Override
+                public void onResult(ThroughputResult upload) {
+                    if (isTestRunning) finalizeFullTest(session);
+                }
+                @Override
+                public void onError(String msg) { handleTestError(msg); }
+            });
         });
         reset.play();
     }
 
     /**
      * Concludes the speed test, saves results to the local database, and updates the history view.
-     * @param dl Final average download speed.
-     * @param ul Final average upload speed.
+     * @param session The session whose phases have all completed.
      */
-    private void finalizeFullTest(double dl, double ul) {
+    private void finalizeFullTest(TestSession session) {
         isTestRunning = false;
-        double latency = speedService.getCurrentLatency();
-        speedService.saveResult(dl, ul);
+        activeSession = null;
+        ThroughputResult download = session.getDownload();
+        ThroughputResult upload = session.getUpload();
+        LatencyResult latency = session.getLatency();
+        double dl = download.getAverageMbps();
+        double ul = upload.getAverageMbps();
+        // Saving is write-behind, so the history is refreshed once the row is committed
+        speedService.saveResult(session).thenRun(() -> Platform.runLater(this::refreshHistory));
 
         Platform.runLater(() -> {
             actionButton.getStyleClass().remove("button-cancel");
             actionButton.setText("RUN TEST");
-            statusLabel.setText(String.format("DL: %.1f Mbps | UL: %.1f Mbps\nLatency: %.0f ms", dl, ul, latency));
+            String idle = SpeedTestService.isLost(latency)
+                    ? "Latency: all probes lost (100% loss)"
+                    : String.format("Latency: %.0f ms | Jitter: %.1f ms", latency.getAvgMs(), latency.getJitterMs());
+            statusLabel.setText(String.format("DL: %.1f Mbps | UL: %.1f Mbps\n%s%s",
+                    dl, ul, idle, formatLoadedLatency(download, upload, latency)));
             speedFeedbackLabel.setText(feedbackService.getFeedback(dl));
             gaugeManager.resetGauge(800).play();
-            refreshHistory();
         });
     }
 
+    /**
+     * Formats the latency measured under load together with the bufferbloat grade.
+     * @param download Summary of the download test.
+     * @param upload   Summary of the upload test.
+     * @param latency  Summary of the idle latency probes.
+     * @return A status line suffix, or an empty string if no loaded probe completed.
+     */
+    private String formatLoadedLatency(ThroughputResult download, ThroughputResult upload, LatencyResult latency) {
+        BufferbloatGrade grade = SpeedTestService.gradeBufferbloat(latency, download, upload);
+        if (grade == null) return "";
+        return String.format("\nLoaded: %s | %s | Bufferbloat: %s",
+                formatLoadedPhase("DL", download), formatLoadedPhase("UL", upload), grade.getLabel());
+    }
+
+    /**
+     * @param label  The short name of the phase, e.g. "DL".
+     * @param result A throughput test summary.
+     * @return The phase label with its loaded latency, or with "lost" if it has no figure.
+     */
+    private static String formatLoadedPhase(String label, ThroughputResult result) {
+        double average = loadedAverage(result);
+        return Double.isNaN(average) ? label + " lost" : String.format("%s %.0f ms", label, average);
+    }
+
+    /**
+     * @param result A throughput test summary.
+     * @return The average loaded latency of the test, or {@code NaN} if it was not measured or every probe was lost.
+     */
+    private static double loadedAverage(ThroughputResult result) {
+        LatencyResult loaded = result.getLoadedLatency();
+        return loaded == null || SpeedTestService.isLost(loaded) ? Double.NaN : loaded.getAvgMs();
+    }
+
     /**
      * Cancels any active network operations and reverts the UI to the default state.
      */
     private void cancelTest() {
         isTestRunning = false;
-        speedService.stopTest();
+        stopActiveSession();
         Platform.runLater(() -> {
             resetUIToDefault();
             statusLabel.setText("Test Cancelled");
         });
     }
 
+    /**
+     * Stops the session started from the UI, leaving any background test untouched.
+     */
+    private void stopActiveSession() {
+        TestSession session = activeSession;
+        activeSession = null;
+        if (session != null) speedService.stopTest(session);
+    }
+
     /**
      * Handles fatal errors during the test sequence.
      * @param error The error message to display to the user.
      */
     private void handleTestError(String error) {
         isTestRunning = false;
-        speedService.stopTest();
+        stopActiveSession();
         Platform.runLater(() -> {
             resetUIToDefault();
             statusLabel.setText(error);
@@ -235,7 +330,7 @@ public class NetPulseController {
         activeMaxSpeed = MAX_DOWNLOAD_GAUGE;
         speedFeedbackLabel.setText("");
         actionButton.setText("CANCEL TEST");
-        statusLabel.setText("Testing Download... (7s)");
+        statusLabel.setText("Testing Download...");
         progressArc.getStyleClass().remove("progress-upload");
         needleCircle.getStyleClass().remove("progress-upload-needle");
         if (uploadMarkers.getOpacity() > 0) {
@@ -253,23 +348,187 @@ public class NetPulseController {
     @FXML private void handleTimeRangeChange() { refreshHistory(); }
 
     /**
-     * Fetches results from the repository, applies time filters, and updates the chart.
+     * Streams the whole history to a CSV or NDJSON file chosen by the user, on a managed virtual thread.
+     */
+    @FXML
+    private void handleExportHistory() {
+        File file = historyFileChooser("Export History").showSaveDialog(historyLineChart.getScene().getWindow());
+        if (file == null) return;
+        HistoryFormat format = HistoryFormat.forFileName(file.getName());
+        runHistoryTransfer("history-export", () -> {
+            try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                HistoryTransferService.TransferStats stats = historyTransferService.export(format, writer);
+                return String.format("Exported %,d result(s) to %s in %,d ms.", stats.rows(), file.getName(), stats.elapsedMs());
+            }
+        });
+    }
+
+    /**
+     * Appends the results of a CSV or NDJSON export to the history, on a managed virtual thread,
+     * and refreshes the chart once the import has committed.
+     */
+    @FXML
+    private void handleImportHistory() {
+        File file = historyFileChooser("Import History").showOpenDialog(historyLineChart.getScene().getWindow());
+        if (file == null) return;
+        HistoryFormat format = HistoryFormat.forFileName(file.getName());
+        runHistoryTransfer("history-import", () -> {
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                HistoryTransferService.TransferStats stats = historyTransferService.importFrom(format, reader);
+                Platform.runLater(this::refreshHistory);
+                return String.format("Imported %,d result(s) from %s in %,d ms (%,d rows/s), skipped %,d.",
+                        stats.rows(), file.getName(), stats.elapsedMs(), Math.round(stats.rowsPerSecond()), stats.skipped());
+            }
+        });
+    }
+
+    /** Builds a file chooser offering both history formats. */
+    private static FileChooser historyFileChooser(String title) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(title);
+        chooser.setInitialFileName("netpulse-history.csv");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV", "*.csv"),
+                new FileChooser.ExtensionFilter("NDJSON", "*.ndjson", "*.jsonl"));
+        return chooser;
+    }
+
+    /**
+     * Runs an export or import off the FX thread with the transfer buttons disabled, and reports
+     * its outcome in a dialog.
+     */
+    private void runHistoryTransfer(String taskName, Callable<String> transfer) {
+        exportHistoryButton.setDisable(true);
+        importHistoryButton.setDisable(true);
+        taskExecutor.submit(taskName, () -> {
+            Alert.AlertType type = Alert.AlertType.INFORMATION;
+            String message;
+            try {
+                message = transfer.call();
+            } catch (Exception e) {
+                type = Alert.AlertType.ERROR;
+                message = "History transfer failed: " + e.getMessage();
+            }
+            Alert.AlertType alertType = type;
+            String alertMessage = message;
+            Platform.runLater(() -> {
+                exportHistoryButton.setDisable(false);
+                importHistoryButton.setDisable(false);
+                new Alert(alertType, alertMessage).show();
+            });
+        });
+    }
+
+    /**
+     * Fetches the results of the selected time range through the history cache, which queries the
+     * repository (already filtered and ordered by the database) only on a miss, and updates the chart.
+     * Long ranges are fetched as per-bucket aggregates instead of raw rows. When the raw chart of the
+     * same range is already showing, only the results committed since are fetched and appended.
      */
     private void refreshHistory() {
-        List<SpeedTestResult> allResults = repository.findAll();
+        String range = timeRangeManager.getSelectedRange();
         LocalDateTime cutoff = timeRangeManager.getCutoffDate();
-        List<SpeedTestResult> filtered = allResults.stream()
-                .filter(r -> cutoff == null || r.getTimestamp().isAfter(cutoff))
-                .toList();
-        Platform.runLater(() -> loadHistoryData(filtered));
+        BucketSize bucketSize = timeRangeManager.getBucketSize();
+        if (bucketSize != null) {
+            List<HistoryBucket> buckets = historyCache.getBuckets(range, cutoff, bucketSize);
+            Platform.runLater(() -> loadAggregatedHistory(range, buckets));
+            return;
+        }
+
+        HistoryData shown = historyData;
+        if (shown != null && shown.raw() && shown.range().equals(range)) {
+            HistoryBuffer fresh = historyCache.getPointsAfter(range, cutoff, shown.points().maxId());
+            Platform.runLater(() -> appendHistoryData(shown, fresh, cutoff));
+            return;
+        }
+
+        HistoryBuffer points = historyCache.getPoints(range, cutoff);
+        Platform.runLater(() -> loadHistoryData(range, points));
     }
 
     /**
-     * Loads filtered results into the JavaFX LineChart.
-     * @param historyList List of SpeedTestResult entities to visualize.
+     * Loads the chart points of filtered results into the JavaFX LineChart.
+     * @param range  The range the points were fetched for.
+     * @param points The id, time, download and upload of every result in the range.
      */
-    private void loadHistoryData(List<SpeedTestResult> historyList) {
-        historyLineChart.getData().clear();
+    private void loadHistoryData(String range, HistoryBuffer points) {
+        showHistory(new HistoryData(range, "Download", "Upload", points, true));
+    }
+
+    /**
+     * Loads per-bucket averages into the JavaFX LineChart, one point per bucket.
+     * @param range   The range the buckets were fetched for.
+     * @param buckets The aggregated history, oldest bucket first.
+     */
+    private void loadAggregatedHistory(String range, List<HistoryBucket> buckets) {
+        HistoryBuffer points = new HistoryBuffer(buckets.size());
+        for (HistoryBucket bucket : buckets) {
+            points.append(HistoryBuffer.toEpochSeconds(bucket.getBucketStart()), bucket.getDownloadAvg(), bucket.getUploadAvg(), 0);
+        }
+        showHistory(new HistoryData(range, "Download (avg)", "Upload (avg)", points, false));
+    }
+
+    /**
+     * Slides the raw chart forward: points that have left the window are removed from the front
+     * of the buffer and of both series, and the new results are appended to both, so the work
+     * follows the number of new and expired results rather than the size of the window.
+     * While the chart is decimated, appended points are drawn at full resolution until the series
+     * outgrow their budget by a quarter, and only then re-decimated.
+     * @param shown  The history the new results were fetched against.
+     * @param fresh  The points of the results committed after the newest one shown, oldest first.
+     * @param cutoff The exclusive lower bound of the window, or {@code null} for the whole history.
+     */
+    private void appendHistoryData(HistoryData shown, HistoryBuffer fresh, LocalDateTime cutoff) {
+        if (shown != historyData) return;
+        HistoryBuffer points = shown.points();
+        if (fresh.size() > 0 && fresh.epochs()[fresh.start()] < points.lastEpoch()) {
+            // Older results arrived, e.g. from an import; they belong in the middle, so reload
+            loadHistoryData(shown.range(), historyCache.getPoints(shown.range(), cutoff));
+            return;
+        }
+
+        double cutoffEpoch = cutoff != null ? HistoryBuffer.toEpochSeconds(cutoff) : Double.NEGATIVE_INFINITY;
+        points.evictThrough(cutoffEpoch);
+        int appendFrom = points.end();
+        for (int i = fresh.start(); i < fresh.end(); i++) {
+            points.append(fresh.epochs()[i], fresh.download()[i], fresh.upload()[i], fresh.ids()[i]);
+        }
+        if (historyLineChart.getData().size() != 2 || renderedPointBudget < 0) {
+            renderHistory();
+            return;
+        }
+
+        boolean overBudget = false;
+        for (int s = 0; s < 2; s++) {
+            XYChart.Series<Number, Number> series = historyLineChart.getData().get(s);
+            double[] values = s == 0 ? points.download() : points.upload();
+            int expired = 0;
+            while (expired < series.getData().size() && series.getData().get(expired).getXValue().doubleValue() <= cutoffEpoch) expired++;
+            if (expired > 0) series.getData().remove(0, expired);
+
+            List<XYChart.Data<Number, Number>> appended = new ArrayList<>(fresh.size());
+            for (int i = appendFrom; i < points.end(); i++) {
+                XYChart.Data<Number, Number> point = new XYChart.Data<>((long) points.epochs()[i], values[i]);
+                point.setExtraValue(points.ids()[i]);
+                appended.add(point);
+            }
+            series.getData().addAll(appended);
+            appended.forEach(this::enableTraceDrillDown);
+            overBudget |= series.getData().size() > renderedPointBudget + renderedPointBudget / 4;
+        }
+        if (overBudget) {
+            renderedPointBudget = -1;
+            renderHistory();
+        }
+    }
+
+    /**
+     * Keeps the full-resolution history for re-decimation and draws it.
+     * @param data The history of the selected range, oldest point first.
+     */
+    private void showHistory(HistoryData data) {
+        historyData = data;
+        renderedPointBudget = -1;
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/dd HH:mm");
 
         historyXAxis.setTickLabelFormatter(new StringConverter<>() {
@@ -279,23 +538,99 @@ public class NetPulseController {
             }
             @Override public Number fromString(String s) { return 0; }
         });
+        renderHistory();
+    }
 
-        XYChart.Series<Number, Number> dlSeries = new XYChart.Series<>();
-        dlSeries.setName("Download");
-        XYChart.Series<Number, Number> ulSeries = new XYChart.Series<>();
-        ulSeries.setName("Upload");
+    /**
+     * Rebuilds the chart series from the stored history, cut down with LTTB to roughly one point
+     * per {@link #PIXELS_PER_HISTORY_POINT} pixels of chart width. Only the selected points become
+     * chart nodes, so the cost of a redraw depends on the chart size rather than the range length.
+     * Skipped when the budget has not changed since the last render.
+     */
+    private void renderHistory() {
+        if (historyData == null) return;
+        double width = historyLineChart.getWidth();
+        int budget = Math.max(MIN_HISTORY_POINTS, (int) (width / PIXELS_PER_HISTORY_POINT));
+        if (budget == renderedPointBudget) return;
+        renderedPointBudget = budget;
+
+        HistoryBuffer points = historyData.points();
+        historyLineChart.getData().clear();
+        historyLineChart.getData().add(decimate(historyData.downloadName(), points, points.download(), historyData.raw(), budget));
+        historyLineChart.getData().add(decimate(historyData.uploadName(), points, points.upload(), historyData.raw(), budget));
+        if (historyData.raw()) {
+            for (XYChart.Series<Number, Number> series : historyLineChart.getData()) {
+                series.getData().forEach(this::enableTraceDrillDown);
+            }
+        }
+    }
 
-        for (SpeedTestResult result : historyList) {
-            long epoch = result.getTimestamp().atZone(java.time.ZoneId.systemDefault()).toEpochSecond();
-            dlSeries.getData().add(new XYChart.Data<>(epoch, result.getDownloadMbps()));
-            ulSeries.getData().add(new XYChart.Data<>(epoch, result.getUploadMbps()));
+    /**
+     * Makes a point of a raw (non-aggregated) history chart open the sample trace of its test on click.
+     * The symbol node only exists once the point is on the chart, so this runs after it is added.
+     */
+    private void enableTraceDrillDown(XYChart.Data<Number, Number> point) {
+        if (point.getNode() == null || !(point.getExtraValue() instanceof Long resultId)) return;
+        long epoch = point.getXValue().longValue();
+        point.getNode().setCursor(Cursor.HAND);
+        point.getNode().setOnMouseClicked(e -> showTrace(resultId, epoch));
+    }
+
+    /**
+     * Loads the stored sample traces of one test on a managed virtual thread and shows them.
+     * @param resultId The id of the result.
+     * @param epoch    The time of the result in epoch seconds.
+     */
+    private void showTrace(long resultId, long epoch) {
+        LocalDateTime timestamp = LocalDateTime.ofInstant(java.time.Instant.ofEpochSecond(epoch), java.time.ZoneId.systemDefault());
+        taskExecutor.submit("trace-" + resultId, () -> {
+            SampleTrace download = traceStore.read(resultId, TransferDirection.DOWNLOAD).orElse(null);
+            SampleTrace upload = traceStore.read(resultId, TransferDirection.UPLOAD).orElse(null);
+            Platform.runLater(() -> {
+                if (download == null && upload == null) {
+                    statusLabel.setText("No sample trace stored for this test.");
+                } else {
+                    traceViewManager.show(timestamp, download, upload);
+                }
+            });
+        });
+    }
+
+    /**
+     * Builds a chart series from the LTTB selection of one history column.
+     * @param name     The series name shown in the legend.
+     * @param points   The full-resolution history.
+     * @param values   The y values in Mbps, {@link HistoryBuffer#download()} or {@link HistoryBuffer#upload()}.
+     * @param withIds  Whether to attach the result id to every kept point.
+     * @param budget   The maximum number of points to keep.
+     * @return The decimated series.
+     */
+    private static XYChart.Series<Number, Number> decimate(String name, HistoryBuffer points, double[] values,
+                                                           boolean withIds, int budget) {
+        XYChart.Series<Number, Number> series = new XYChart.Series<>();
+        series.setName(name);
+        double[] epochs = points.epochs();
+        int[] selected = LttbDownsampler.select(epochs, values, points.start(), points.end(), budget);
+        List<XYChart.Data<Number, Number>> data = new ArrayList<>(selected.length);
+        for (int i : selected) {
+            XYChart.Data<Number, Number> point = new XYChart.Data<>((long) epochs[i], values[i]);
+            if (withIds) point.setExtraValue(points.ids()[i]);
+            data.add(point);
         }
-        historyLineChart.getData().add(dlSeries);
-        historyLineChart.getData().add(ulSeries);
+        series.getData().setAll(data);
+        return series;
     }
 
     /**
-     * Executes a comprehensive network diagnostic scan in a background thread.
+     * Full-resolution history of the selected range, kept so that resizing the chart can
+     * re-decimate without querying the database again, and so that a refresh of the same raw
+     * range only has to append. Raw history carries the result ids for drilling into a single
+     * test; aggregated history has none.
+     */
+    private record HistoryData(String range, String downloadName, String uploadName, HistoryBuffer points, boolean raw) {}
+
+    /**
+     * Executes a comprehensive network diagnostic scan on a managed virtual thread.
      * Scans local adapters, public ISP data, DNS resolution, and global latency.
      */
     @FXML
@@ -304,7 +639,7 @@ public class NetPulseController {
         diagnosticsArea.clear();
         updateDiagnosticsArea(">>> Starting Network Scan...");
 
-        Thread diagThread = new Thread(() -> {
+        taskExecutor.submit("diagnostics", () -> {
             try {
                 updateDiagnosticsArea("Local Adapter: " + diagnosticService.getActiveInterface());
                 updateDiagnosticsArea("\nLocating Public ISP...");
@@ -327,8 +662,6 @@ public class NetPulseController {
                 Platform.runLater(() -> diagButton.setDisable(false));
             }
         });
-        diagThread.setDaemon(true);
-        diagThread.start();
     }
 
     /** Updates the diagnostic text area safely from a background thread. */
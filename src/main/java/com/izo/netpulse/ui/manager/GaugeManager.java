@@ -1,5 +1,6 @@
 package com.izo.netpulse.ui.manager;
 
+import javafx.animation.AnimationTimer;
 import javafx.animation.KeyFrame;
 import javafx.animation.KeyValue;
 import javafx.animation.Timeline;
@@ -10,12 +11,28 @@ import javafx.scene.shape.Arc;
 import javafx.scene.shape.Circle;
 import javafx.util.Duration;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Manages the visual state and animations of the speed gauge.
  * This class coordinates the length of the progress arc, the coordinates of
  * the needle indicator, and the text value displayed to the user.
+ * <p>Speed samples may arrive from any thread and at any rate. Each one only overwrites the
+ * latest target in an atomic handoff slot; a single {@link AnimationTimer} reads that slot once
+ * per frame and eases the needle towards it. Gauge updates therefore cost a fixed amount per
+ * frame, never queue work on the FX thread, and allocate nothing unless the displayed value changes.</p>
  */
 public class GaugeManager {
+
+    /** Time constant of the needle easing; the needle covers ~95% of a jump in about 200 ms. */
+    private static final double EASING_TIME_CONSTANT_NANOS = 70_000_000.0;
+
+    /** Sweeps closer than this to the target snap onto it, so an idle gauge stops redrawing. */
+    private static final double SNAP_DEGREES = 0.05;
+
+    /** Full angular sweep of the gauge in degrees; negative because the needle moves clockwise. */
+    private static final double FULL_SWEEP = -300;
+
     private final Arc progressArc;
     private final Circle needleCircle;
     private final Label speedValueLabel;
@@ -25,8 +42,23 @@ public class GaugeManager {
      */
     private final DoubleProperty currentSweep = new SimpleDoubleProperty(0);
 
+    /** Latest requested speed in Mbps, stored as raw double bits; written by any thread, read once per frame. */
+    private final AtomicLong targetMbps = new AtomicLong(Double.doubleToRawLongBits(0));
+
+    /** Upper bound of the scale that applies to {@link #targetMbps}. */
+    private volatile double targetMaxSpeed = 1;
+
+    /** Value shown in the label, in tenths of a Mbps; the text is only rebuilt when this changes. */
+    private long displayedTenths = 0;
+
+    private long lastFrameNanos = -1;
+    private volatile boolean animating = true;
+
+    /** Set while a reset Timeline drives the needle, so the frame timer does not fight it. */
+    private boolean resetting = false;
+
     /**
-     * Constructs a GaugeManager and initializes the needle position.
+     * Constructs a GaugeManager, initializes the needle position and starts the frame timer.
      * @param progressArc The background arc representing the speed progress.
      * @param needleCircle The circular tip of the needle that tracks the speed.
      * @param speedValueLabel The central label displaying the numerical speed.
@@ -40,36 +72,76 @@ public class GaugeManager {
         currentSweep.addListener((obs, old, newVal) -> updateNeedlePosition(newVal.doubleValue()));
 
         updateNeedlePosition(0);
+
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                renderFrame(now);
+            }
+        }.start();
     }
 
     /**
-     * Updates the gauge visuals based on the current throughput.
-     * Uses a short Timeline animation to ensure the needle transitions smoothly
-     * between sampling intervals.
+     * Publishes the current throughput to the gauge. Safe to call from any thread at any rate;
+     * only the latest value is rendered, on the next frame.
      * @param mbps The current speed measured in Megabits per second.
      * @param maxSpeed The upper bound of the current gauge scale (e.g., 250 for Download).
      */
     public void updateGauge(double mbps, double maxSpeed) {
-        speedValueLabel.setText(String.format("%.1f", mbps));
-
-        // Map speed to a percentage of the 300-degree total arc sweep.
-        // The sweep is negative to indicate clockwise movement in JavaFX coordinate space.
-        double targetSweep = Math.min(mbps / maxSpeed, 1.0) * -300;
-
-        new Timeline(new KeyFrame(Duration.millis(200),
-                new KeyValue(currentSweep, targetSweep))).play();
+        targetMaxSpeed = maxSpeed;
+        targetMbps.set(Double.doubleToRawLongBits(mbps));
+        animating = true;
     }
 
     /**
      * Creates a Timeline to return the gauge and speed label to zero.
      * Useful for transitions between download and upload phases.
+     * Nothing changes until the Timeline is played; it then takes over the needle from the frame
+     * timer and brings it to exactly zero by the time it finishes.
      * @param ms The duration of the reset animation in milliseconds.
      * @return The configured Timeline, ready to be played.
      */
     public Timeline resetGauge(int ms) {
-        return new Timeline(new KeyFrame(Duration.millis(ms),
-                new KeyValue(currentSweep, 0),
-                new KeyValue(speedValueLabel.textProperty(), "0.0")));
+        return new Timeline(
+                new KeyFrame(Duration.ZERO, e -> {
+                    resetting = true;
+                    targetMbps.set(Double.doubleToRawLongBits(0));
+                }),
+                new KeyFrame(Duration.millis(ms), e -> {
+                    displayedTenths = 0;
+                    resetting = false;
+                }, new KeyValue(currentSweep, 0), new KeyValue(speedValueLabel.textProperty(), "0.0")));
+    }
+
+    /**
+     * Advances the needle one frame towards the latest published target and refreshes the label
+     * if its rounded value changed. Runs on the FX thread once per pulse.
+     * @param now The timestamp of the current frame in nanoseconds.
+     */
+    private void renderFrame(long now) {
+        long elapsed = lastFrameNanos < 0 ? 0 : now - lastFrameNanos;
+        lastFrameNanos = now;
+        if (!animating || resetting) return;
+
+        long targetBits = targetMbps.get();
+        double mbps = Math.max(Double.longBitsToDouble(targetBits), 0);
+        double targetSweep = Math.min(mbps / targetMaxSpeed, 1.0) * FULL_SWEEP;
+
+        double sweep = currentSweep.get();
+        double next = sweep + (targetSweep - sweep) * (1 - Math.exp(-elapsed / EASING_TIME_CONSTANT_NANOS));
+        if (Math.abs(targetSweep - next) < SNAP_DEGREES) {
+            next = targetSweep;
+            // Go idle, then re-check so a value published concurrently is never missed
+            animating = false;
+            if (targetMbps.get() != targetBits) animating = true;
+        }
+        currentSweep.set(next);
+
+        long tenths = Math.round(mbps * 10);
+        if (tenths != displayedTenths) {
+            displayedTenths = tenths;
+            speedValueLabel.setText((tenths / 10) + "." + (tenths % 10));
+        }
     }
 
     /**
@@ -1,5 +1,6 @@
 package com.izo.netpulse.ui.manager;
 
+import com.izo.netpulse.model.BucketSize;
 import javafx.scene.control.ComboBox;
 import java.time.LocalDateTime;
 
@@ -40,6 +41,13 @@ public class TimeRangeManager {
         comboBox.setValue(LAST_DAY);
     }
 
+    /**
+     * @return The label of the selected range, e.g. {@link #LAST_DAY}; stable across calls, unlike the cutoff.
+     */
+    public String getSelectedRange() {
+        return comboBox.getValue();
+    }
+
     /**
      * Calculates the starting date and time for a filter based on the current UI selection.
      * Uses a switch expression to derive the offset from the current system clock.
@@ -59,4 +67,19 @@ public class TimeRangeManager {
             default            -> null; // Signifies no temporal filtering should be applied
         };
     }
+
+    /**
+     * Chooses how the selected range is charted. Short ranges show every result, while longer ones
+     * are aggregated in the database so that the number of plotted points stays bounded
+     * (at most a few hundred per series) however much history has accumulated.
+     * @return The bucket size to aggregate by, or {@code null} to chart raw results.
+     */
+    public BucketSize getBucketSize() {
+        return switch (comboBox.getValue()) {
+            case LAST_12_HOURS, LAST_DAY -> null;
+            case LAST_WEEK, LAST_MONTH   -> BucketSize.HOURLY;
+            case LAST_YEAR               -> BucketSize.DAILY;
+            default                      -> BucketSize.WEEKLY;
+        };
+    }
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package com.izo.netpulse.ui.manager;
+
+import com.izo.netpulse.model.SampleTrace;
+import javafx.scene.Parent;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Dialog;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shows the raw sample trace of a single historical test in its own dialog.
+ * <p>Opened when a point of the history chart is clicked. The dialog inherits the stylesheets and
+ * theme class of the main window, so it follows the current light or dark mode.</p>
+ */
+public class TraceViewManager {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+    private static final DateTimeFormatter TITLE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private final Parent rootContainer;
+
+    /**
+     * @param rootContainer The top-level UI node whose window owns the dialog and whose styling it copies.
+     */
+    public TraceViewManager(Parent rootContainer) {
+        this.rootContainer = rootContainer;
+    }
+
+    /**
+     * Opens a dialog plotting the instantaneous rate of both phases over the test time.
+     * @param timestamp The time the test finished, shown in the title.
+     * @param download  The download samples, or {@code null} if none were stored.
+     * @param upload    The upload samples, or {@code null} if none were stored.
+     */
+    public void show(LocalDateTime timestamp, SampleTrace download, SampleTrace upload) {
+        NumberAxis xAxis = new NumberAxis();
+        xAxis.setLabel("Time (s)");
+        NumberAxis yAxis = new NumberAxis();
+        yAxis.setLabel("Speed (Mbps)");
+
+        LineChart<Number, Number> chart = new LineChart<>(xAxis, yAxis);
+        chart.setAnimated(false);
+        chart.setCreateSymbols(false);
+        chart.getStyleClass().add("history-line-chart");
+        chart.getData().add(toSeries("Download", download));
+        chart.getData().add(toSeries("Upload", upload));
+
+        Dialog<Void> dialog = new Dialog<>();
+        dialog.setTitle("Test Trace");
+        dialog.setHeaderText("Samples of the test at " + timestamp.format(TITLE_FORMAT));
+        dialog.initOwner(rootContainer.getScene().getWindow());
+        dialog.getDialogPane().getStylesheets().addAll(rootContainer.getScene().getStylesheets());
+        dialog.getDialogPane().getStyleClass().addAll(rootContainer.getStyleClass());
+        dialog.getDialogPane().setContent(chart);
+        dialog.getDialogPane().setPrefSize(720, 420);
+        dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+        dialog.show();
+    }
+
+    /**
+     * @param name  The legend name of the series.
+     * @param trace The samples to plot, possibly {@code null}.
+     * @return A series of the instantaneous rate over the seconds since the test started.
+     */
+    private static XYChart.Series<Number, Number> toSeries(String name, SampleTrace trace) {
+        XYChart.Series<Number, Number> series = new XYChart.Series<>();
+        series.setName(name);
+        if (trace == null) return series;
+
+        List<XYChart.Data<Number, Number>> points = new ArrayList<>(trace.size());
+        for (int i = 0; i < trace.size(); i++) {
+            points.add(new XYChart.Data<>(trace.getNanos(i) / NANOS_PER_SECOND, trace.getMbps(i)));
+        }
+        series.getData().setAll(points);
+        return series;
+    }
+}
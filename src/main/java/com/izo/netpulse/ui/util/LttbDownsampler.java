@@ -0,0 +1,85 @@
+package com.izo.netpulse.ui.util;
+
+/**
+ * Largest-Triangle-Three-Buckets (LTTB) downsampling for line charts.
+ * <p>LTTB keeps the first and last points and splits the rest into equal buckets. From each
+ * bucket it picks the point that forms the largest triangle with the previously chosen point and
+ * the average of the next bucket. Peaks, dips and overall shape survive, so a series of
+ * hundreds of thousands of points can be drawn with one point per couple of pixels and look
+ * the same as the full series. Runs in O(n) without allocating beyond the returned index array.</p>
+ */
+public final class LttbDownsampler {
+
+    private LttbDownsampler() {}
+
+    /**
+     * Selects the points of a series to keep.
+     * @param x         The x values, in ascending order.
+     * @param y         The y values, the same length as {@code x}.
+     * @param threshold The maximum number of points to keep; values below 3 are treated as 3.
+     * @return The indices of the kept points in ascending order, or every index if the series already fits.
+     */
+    public static int[] select(double[] x, double[] y, int threshold) {
+        return select(x, y, 0, x.length, threshold);
+    }
+
+    /**
+     * Selects the points to keep from a slice of a series, e.g. the live part of a buffer that
+     * is appended to at the end and trimmed at the front.
+     * @param x         The x values, in ascending order within the slice.
+     * @param y         The y values, indexed like {@code x}.
+     * @param from      The first index of the slice, inclusive.
+     * @param to        The last index of the slice, exclusive.
+     * @param threshold The maximum number of points to keep; values below 3 are treated as 3.
+     * @return The indices (into {@code x}, not the slice) of the kept points in ascending order,
+     *         or every index of the slice if it already fits.
+     */
+    public static int[] select(double[] x, double[] y, int from, int to, int threshold) {
+        int n = to - from;
+        threshold = Math.max(3, threshold);
+        if (n <= threshold) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) all[i] = from + i;
+            return all;
+        }
+
+        int[] selected = new int[threshold];
+        double bucketSize = (double) (n - 2) / (threshold - 2);
+        int chosen = from;
+        selected[0] = from;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket acts as the third corner of the triangle
+            int nextStart = from + (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            int nextEnd = from + Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, n);
+            double avgX = 0;
+            double avgY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                avgX += x[i];
+                avgY += y[i];
+            }
+            int nextCount = Math.max(1, nextEnd - nextStart);
+            avgX /= nextCount;
+            avgY /= nextCount;
+
+            int start = from + (int) Math.floor(bucket * bucketSize) + 1;
+            int end = from + (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            double ax = x[chosen];
+            double ay = y[chosen];
+            double maxArea = -1;
+            int best = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((ax - avgX) * (y[i] - ay) - (ax - x[i]) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    best = i;
+                }
+            }
+            selected[bucket + 1] = best;
+            chosen = best;
+        }
+
+        selected[threshold - 1] = to - 1;
+        return selected;
+    }
+}
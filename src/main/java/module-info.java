@@ -1,6 +1,7 @@
 module com.izo.netpulse {
     //Java
     requires java.net.http;
+    requires jdk.httpserver;
 
     // JavaFX
     requires javafx.controls;
@@ -14,18 +15,21 @@ module com.izo.netpulse {
     requires spring.beans;
     requires spring.core;
     requires spring.data.jpa;
+    requires spring.jdbc;
     requires spring.tx;
 
     // Java & Jakarta APIs
     requires java.prefs;
     requires java.sql;
     requires jakarta.persistence;
+    requires jakarta.annotation;
     requires jakarta.transaction;
     requires jakarta.cdi;
     requires org.hibernate.orm.core;
 
     // Third Party Libraries
     requires okhttp3;
+    requires okio;
     requires jspeedtest;
     requires org.slf4j;
     requires static lombok;
@@ -41,7 +45,9 @@ module com.izo.netpulse {
     opens com.izo.netpulse.ui to spring.core, spring.beans, javafx.fxml;
     opens com.izo.netpulse.ui.manager to spring.beans;
     opens com.izo.netpulse.service to spring.core, spring.beans, spring.context;
+    opens com.izo.netpulse.service.backend to spring.core, spring.beans, spring.context;
     opens com.izo.netpulse.model to org.hibernate.orm.core, spring.core;
+    opens com.izo.netpulse.repository to spring.core, spring.beans, spring.context;
 
     exports com.izo.netpulse;
 }
\ No newline at end of file
@@ -1,23 +1,79 @@
 package com.izo.netpulse;
 
+import com.izo.netpulse.model.BucketSize;
+import com.izo.netpulse.model.BufferbloatGrade;
+import com.izo.netpulse.model.HistoryBuffer;
+import com.izo.netpulse.model.SampleTrace;
 import com.izo.netpulse.model.SpeedTestResult;
+import com.izo.netpulse.model.TransferDirection;
+import com.izo.netpulse.repository.HistoryBucket;
+import com.izo.netpulse.repository.HistoryPointRepository;
+import com.izo.netpulse.repository.SchemaMigrator;
 import com.izo.netpulse.repository.SpeedRepository;
+import com.izo.netpulse.repository.TraceStore;
+import com.izo.netpulse.service.SlowStartDetector;
 import com.izo.netpulse.service.SpeedFeedbackService;
 import com.izo.netpulse.service.SpeedTestService;
+import com.izo.netpulse.service.TestSession;
+import com.izo.netpulse.service.ConvergenceDetector;
 import com.izo.netpulse.service.DiagnosticService;
+import com.izo.netpulse.service.DownloadSink;
+import com.izo.netpulse.service.HistoryCache;
+import com.izo.netpulse.service.HistoryFormat;
+import com.izo.netpulse.service.HistoryTransferService;
+import com.izo.netpulse.service.LatencyProbe;
+import com.izo.netpulse.service.LatencyProbeEngine;
+import com.izo.netpulse.service.LatencyRecorder;
+import com.izo.netpulse.service.LatencyResult;
+import com.izo.netpulse.service.ResultWriter;
+import com.izo.netpulse.service.RetentionService;
+import com.izo.netpulse.service.NetworkTaskExecutor;
+import com.izo.netpulse.service.ThroughputHistogram;
+import com.izo.netpulse.service.ThroughputResult;
+import com.izo.netpulse.service.ThroughputSampler;
+import com.izo.netpulse.service.TransferCounters;
+import com.izo.netpulse.service.UploadPayloadPublisher;
+import com.izo.netpulse.service.backend.LoopbackBackend;
+import com.izo.netpulse.service.backend.SpeedTestBackend;
 import com.izo.netpulse.ui.NetPulseController;
+import com.izo.netpulse.ui.util.LttbDownsampler;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.prefs.Preferences;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -42,11 +98,42 @@ class NetpulseApplicationTests {
     @Autowired
     private DiagnosticService diagnosticService;
 
+    @Autowired
+    private NetworkTaskExecutor taskExecutor;
+
+    @Autowired
+    private LatencyProbeEngine latencyEngine;
+
+    @Autowired
+    private SchemaMigrator schemaMigrator;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ResultWriter resultWriter;
+
+    @Autowired
+    private RetentionService retentionService;
+
+    @Autowired
+    private TraceStore traceStore;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private HistoryTransferService historyTransferService;
+
+    @Autowired
+    private HistoryPointRepository pointRepository;
+
     private MockWebServer mockWebServer;
 
     @BeforeEach
     void setup() throws IOException {
         repository.deleteAll();
+        jdbcTemplate.update("DELETE FROM RESULT_ROLLUP");
         mockWebServer = new MockWebServer();
         mockWebServer.start();
     }
@@ -105,6 +192,62 @@ class NetpulseApplicationTests {
         assertEquals(10, repository.count(), "Database should contain exactly 10 records");
     }
 
+    @Test
+    @DisplayName("Write-behind queue batches results and completes every future")
+    void testResultWriteBehind() {
+        List<CompletableFuture<SpeedTestResult>> pending = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            SpeedTestResult result = new SpeedTestResult();
+            result.setDownloadMbps(i);
+            result.setTimestamp(LocalDateTime.now());
+            pending.add(resultWriter.submit(result));
+        }
+
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).orTimeout(10, TimeUnit.SECONDS).join();
+        assertEquals(200, repository.count(), "Every queued result should be committed");
+        assertNotNull(pending.getLast().join().getId(), "Futures should complete with the saved entity");
+        assertEquals(0, resultWriter.getQueueDepth());
+        assertEquals(200, resultWriter.getWrittenCount());
+        assertTrue(resultWriter.getFlushCount() < 200, "Queued results should be written in batches");
+        assertTrue(resultWriter.getMaxFlushMs() > 0, "Flush latency should be recorded");
+    }
+
+    @Test
+    @DisplayName("Trace store appends, rolls segments over and reads traces back after reopening")
+    void testTraceStoreRoundTrip(@TempDir Path directory) throws IOException {
+        SampleTrace download = new SampleTrace(4);
+        for (int i = 0; i < 50; i++) {
+            download.record(i * 200_000_000L, i * 1_000_000L, 40.0 + i);
+        }
+        SampleTrace upload = new SampleTrace();
+        upload.record(150_000_000L, 65_536, 3.5);
+
+        // Segments of 2 KB hold one download trace each, forcing a rollover
+        TraceStore store = new TraceStore(directory.toString(), 2048);
+        LocalDate day = LocalDate.of(2025, 3, 3);
+        assertTrue(store.append(7, day, TransferDirection.DOWNLOAD, download));
+        assertTrue(store.append(7, day, TransferDirection.UPLOAD, upload));
+        assertTrue(store.append(8, day, TransferDirection.DOWNLOAD, download));
+        assertFalse(store.append(9, day, TransferDirection.DOWNLOAD, new SampleTrace()), "Empty traces should be skipped");
+        store.close();
+
+        try (var files = Files.list(directory)) {
+            assertEquals(2, files.filter(file -> file.getFileName().toString().startsWith("trace-20250303-")).count(),
+                    "The second download trace should roll over to a new segment");
+        }
+
+        TraceStore reopened = new TraceStore(directory.toString(), 2048);
+        SampleTrace read = reopened.read(8, TransferDirection.DOWNLOAD).orElseThrow();
+        assertEquals(50, read.size());
+        assertEquals(49 * 200_000_000L, read.getNanos(49));
+        assertEquals(49 * 1_000_000L, read.getBytes(49));
+        assertEquals(89.0, read.getMbps(49), 1e-9);
+        assertEquals(3.5, reopened.read(7, TransferDirection.UPLOAD).orElseThrow().getMbps(0), 1e-9);
+        assertTrue(reopened.read(8, TransferDirection.UPLOAD).isEmpty(), "Unrecorded phases should be empty");
+        assertTrue(reopened.read(42, TransferDirection.DOWNLOAD).isEmpty(), "Unknown results should be empty");
+        reopened.close();
+    }
+
     @Test
     @DisplayName("Latency should start at 0.0")
     void testInitialLatencyValue() {
@@ -115,7 +258,7 @@ class NetpulseApplicationTests {
     @DisplayName("OkHttp: Verify service handles network error gracefully")
     void testNetworkErrorHandling() {
         mockWebServer.enqueue(new MockResponse().setResponseCode(404));
-        assertDoesNotThrow(() -> speedTestService.runDownloadTest(new SpeedTestService.TestCallback() {
+        assertDoesNotThrow(() -> speedTestService.runDownloadTest(speedTestService.newSession(), new SpeedTestService.TestCallback() {
             @Override public void onInstantUpdate(double mbps) {}
             @Override public void onComplete(double avg) {}
             @Override public void onError(String msg) {
@@ -124,6 +267,301 @@ class NetpulseApplicationTests {
         }));
     }
 
+    @Test
+    @DisplayName("Schema migrations are applied once and are idempotent")
+    void testSchemaMigration() {
+        assertEquals(SchemaMigrator.LATEST_VERSION, schemaMigrator.getCurrentVersion());
+        assertDoesNotThrow(schemaMigrator::migrate, "Re-running migrations should be a no-op");
+        assertEquals(SchemaMigrator.LATEST_VERSION, schemaMigrator.getCurrentVersion());
+
+        SpeedTestResult result = new SpeedTestResult();
+        result.setDownloadMbps(120.0);
+        result.setUploadMbps(30.0);
+        result.setTimestamp(LocalDateTime.now());
+        result.setDownloadBytes(150_000_000L);
+        result.setDownloadStreams(4);
+        result.setBackend(LoopbackBackend.NAME);
+        result.setNetworkInterface("eth0");
+        SpeedTestResult saved = repository.findById(repository.save(result).getId()).orElseThrow();
+        assertEquals(150_000_000L, saved.getDownloadBytes());
+        assertEquals(4, saved.getDownloadStreams());
+        assertEquals(LoopbackBackend.NAME, saved.getBackend());
+        assertNull(saved.getUploadBytes(), "Unmeasured fields stay null");
+    }
+
+    @Test
+    @DisplayName("Stopping one test session leaves concurrent sessions untouched")
+    void testSessionIsolation() {
+        TestSession manual = speedTestService.newSession(LoopbackBackend.NAME);
+        TestSession background = speedTestService.newSession(LoopbackBackend.NAME);
+        assertNotEquals(manual.getId(), background.getId());
+        assertEquals(TestSession.Phase.CREATED, manual.getPhase());
+
+        speedTestService.stopTest(manual);
+        assertTrue(manual.isCancelled());
+        assertEquals(TestSession.Phase.CANCELLED, manual.getPhase());
+        assertFalse(background.isCancelled(), "Cancelling one session must not cancel another");
+        assertTrue(speedTestService.getActiveSessions().contains(background));
+        assertFalse(speedTestService.getActiveSessions().contains(manual));
+
+        speedTestService.runDownloadTest(manual, new SpeedTestService.TestCallback() {
+            @Override public void onInstantUpdate(double mbps) { fail("A cancelled session must not start"); }
+            @Override public void onError(String msg) { fail("A cancelled session must not start"); }
+        });
+        assertEquals(TestSession.Phase.CANCELLED, manual.getPhase());
+        assertNull(manual.getCounters());
+
+        assertThrows(IllegalStateException.class, () -> speedTestService.saveResult(background),
+                "A session without throughput results cannot be saved");
+        speedTestService.stopTest(background);
+    }
+
+    @Test
+    @DisplayName("Transfer counters aggregate bytes across streams")
+    void testTransferCountersAggregation() {
+        TransferCounters counters = new TransferCounters(2);
+        int first = counters.openStream();
+        int second = counters.openStream();
+
+        counters.add(first, 1000);
+        counters.add(second, 500);
+        counters.add(first, 250);
+
+        assertEquals(-1, counters.openStream(), "Slots beyond capacity should be rejected");
+        assertEquals(2, counters.streamCount());
+        assertEquals(1250, counters.streamTotal(first));
+        assertEquals(1750, counters.total(), "Aggregate should sum every stream");
+    }
+
+    @Test
+    @DisplayName("Upload payload publisher honours the byte cap")
+    void testUploadPayloadByteCap() {
+        AtomicLong counted = new AtomicLong();
+        AtomicLong received = new AtomicLong();
+        AtomicBoolean completed = new AtomicBoolean(false);
+        UploadPayloadPublisher publisher = new UploadPayloadPublisher(
+                1_000_000, System.nanoTime() + 10_000_000_000L, () -> false, counted::addAndGet);
+
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override public void onSubscribe(Flow.Subscription subscription) { subscription.request(Long.MAX_VALUE); }
+            @Override public void onNext(ByteBuffer item) { received.addAndGet(item.remaining()); }
+            @Override public void onError(Throwable throwable) { fail(throwable); }
+            @Override public void onComplete() { completed.set(true); }
+        });
+
+        assertTrue(completed.get(), "Publisher should complete once the cap is reached");
+        assertEquals(1_000_000, received.get(), "Body should stop exactly at the byte cap");
+        assertEquals(received.get(), counted.get(), "Every emitted byte should be counted");
+    }
+
+    @Test
+    @DisplayName("OkHttp: Every download sink counts the exact body size")
+    void testDownloadSinksCountExactBytes() throws IOException {
+        String body = "x".repeat(1_000_000);
+        OkHttpClient client = new OkHttpClient();
+
+        for (DownloadSink sink : DownloadSink.values()) {
+            mockWebServer.enqueue(new MockResponse().setBody(body));
+            AtomicLong counted = new AtomicLong();
+            try (Response response = client.newCall(new Request.Builder().url(mockWebServer.url("/__down")).build()).execute()) {
+                sink.drain(response.body(), () -> true, counted::addAndGet);
+            }
+            assertEquals(body.length(), counted.get(), sink + " sink should count every received byte");
+        }
+    }
+
+    @Test
+    @DisplayName("Task group cancellation interrupts every virtual thread")
+    void testTaskGroupCancellation() throws InterruptedException {
+        NetworkTaskExecutor.TaskGroup group = taskExecutor.newGroup("test");
+        CountDownLatch started = new CountDownLatch(3);
+        CountDownLatch interrupted = new CountDownLatch(3);
+
+        for (int i = 0; i < 3; i++) {
+            group.submit("sleeper-" + i, () -> {
+                assertTrue(Thread.currentThread().isVirtual(), "Tasks should run on virtual threads");
+                started.countDown();
+                try {
+                    Thread.sleep(30_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            });
+        }
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(3, group.getActiveTaskCount());
+
+        group.cancel();
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS), "Cancelling the group should interrupt all tasks");
+        assertFalse(group.submit("late", () -> {}), "A cancelled group should reject new tasks");
+    }
+
+    @Test
+    @DisplayName("Loopback backend serves download, upload and latency probes offline")
+    void testLoopbackBackendRoundTrip() throws Exception {
+        SpeedTestBackend loopback = speedTestService.getBackend(LoopbackBackend.NAME);
+        OkHttpClient client = new OkHttpClient();
+
+        AtomicLong downloaded = new AtomicLong();
+        try (Response response = client.newCall(loopback.downloadRequest(50_000_000)).execute()) {
+            assertTrue(response.isSuccessful());
+            DownloadSink.SKIP.drain(response.body(), () -> true, downloaded::addAndGet);
+        }
+        assertEquals(50_000_000, downloaded.get(), "Loopback download should deliver the requested size");
+
+        AtomicLong uploaded = new AtomicLong();
+        try (HttpClient uploadClient = HttpClient.newHttpClient()) {
+            HttpRequest request = loopback.uploadRequest()
+                    .POST(new UploadPayloadPublisher(20_000_000, System.nanoTime() + 10_000_000_000L,
+                            () -> false, uploaded::addAndGet))
+                    .build();
+            HttpResponse<Void> response = uploadClient.send(request, HttpResponse.BodyHandlers.discarding());
+            assertEquals(200, response.statusCode());
+        }
+        assertEquals(20_000_000, uploaded.get(), "Loopback upload should accept the whole body");
+
+        try (Response response = client.newCall(loopback.latencyRequest()).execute()) {
+            assertEquals(204, response.code());
+        }
+    }
+
+    @Test
+    @DisplayName("Latency engine separates handshake phases from round trips and counts lost probes")
+    void testLatencyProbePhases() {
+        Request ping = speedTestService.getBackend(LoopbackBackend.NAME).latencyRequest();
+        LatencyResult latency = latencyEngine.measure(ping, () -> true);
+        assertEquals(10, latency.getProbesSent());
+        assertEquals(0.0, latency.getLossPercent(), "Loopback probes should never be lost");
+        assertTrue(latency.getMinMs() <= latency.getAvgMs() && latency.getAvgMs() <= latency.getP95Ms() + 1e-9);
+        assertTrue(latency.getConnectMs() > 0, "The first probe should record a TCP handshake");
+        assertEquals(0.0, latency.getTlsMs(), "Plain HTTP probes have no TLS phase");
+
+        LatencyRecorder recorder = new LatencyRecorder();
+        recorder.record(new LatencyProbe(5, 10, 20, 30, 65, false, null, null));
+        recorder.record(new LatencyProbe(0, 0, 0, 40, 40, true, null, null));
+        recorder.recordLoss();
+        recorder.record(new LatencyProbe(0, 0, 0, 20, 20, true, null, null));
+        LatencyResult synthetic = recorder.toResult();
+        assertEquals(20.0, synthetic.getMinMs());
+        assertEquals(30.0, synthetic.getAvgMs(), 1e-9);
+        assertEquals(40.0, synthetic.getP95Ms());
+        assertEquals(15.0, synthetic.getJitterMs(), 1e-9, "Jitter is the mean change between consecutive answered probes");
+        assertEquals(25.0, synthetic.getLossPercent(), 1e-9);
+        assertEquals(20.0, synthetic.getTlsMs(), 1e-9, "Handshake phases come from fresh connections only");
+    }
+
+    @Test
+    @DisplayName("Bufferbloat grade follows the worst latency increase under load")
+    void testBufferbloatGrade() {
+        assertEquals(BufferbloatGrade.A_PLUS, BufferbloatGrade.forIncrease(-2));
+        assertEquals(BufferbloatGrade.B, BufferbloatGrade.forIncrease(45));
+        assertEquals(BufferbloatGrade.F, BufferbloatGrade.forIncrease(900));
+
+        LatencyResult idle = LatencyResult.builder().avgMs(20).probesSent(10).build();
+        ThroughputResult download = ThroughputResult.builder()
+                .loadedLatency(LatencyResult.builder().avgMs(35).probesSent(20).build()).build();
+        ThroughputResult upload = ThroughputResult.builder()
+                .loadedLatency(LatencyResult.builder().avgMs(250).probesSent(20).build()).build();
+        assertEquals(BufferbloatGrade.D, SpeedTestService.gradeBufferbloat(idle, download, upload),
+                "The upload phase (+230 ms) should drive the grade");
+
+        ThroughputResult unprobed = ThroughputResult.builder().build();
+        assertNull(SpeedTestService.gradeBufferbloat(idle, unprobed, unprobed));
+
+        LatencyResult lost = LatencyResult.builder().lossPercent(100.0).probesSent(10).build();
+        assertTrue(SpeedTestService.isLost(lost));
+        assertNull(SpeedTestService.gradeBufferbloat(lost, download, upload), "Without idle latency there is no baseline");
+    }
+
+    @Test
+    @DisplayName("Adaptive duration stops early only on a converged estimate")
+    void testConvergenceDetector() {
+        ConvergenceDetector adaptive = new ConvergenceDetector(3000, 15000, 0.05);
+        ThroughputSampler steady = new ThroughputSampler(10);
+        long elapsed = 0;
+        while (!adaptive.shouldStop(elapsed, true)) {
+            elapsed += 200;
+            adaptive.addEstimate(steady.add(100.0 + (elapsed % 400 == 0 ? 1 : -1)));
+        }
+        assertTrue(adaptive.isConverged(), "A steady link should converge");
+        assertTrue(elapsed >= 3000 && elapsed < 15000, "A steady link should stop between min and max duration");
+
+        ConvergenceDetector noisy = new ConvergenceDetector(3000, 15000, 0.05);
+        ThroughputSampler bursty = new ThroughputSampler(10);
+        for (elapsed = 200; elapsed < 15000; elapsed += 200) {
+            noisy.addEstimate(bursty.add(elapsed % 1600 < 800 ? 10.0 : 200.0));
+            assertFalse(noisy.shouldStop(elapsed, true), "A fluctuating link should not stop early");
+        }
+        assertTrue(noisy.shouldStop(15000, true), "The maximum duration should always stop the test");
+
+        ConvergenceDetector fixed = ConvergenceDetector.fixed(7000);
+        for (int i = 0; i < 30; i++) fixed.addEstimate(50.0);
+        assertFalse(fixed.shouldStop(6800, true));
+        assertTrue(fixed.shouldStop(7000, true));
+    }
+
+    @Test
+    @DisplayName("Sampler tracks moving average, max and streaming percentiles")
+    void testThroughputSamplerStatistics() {
+        ThroughputSampler sampler = new ThroughputSampler(4);
+        for (int i = 1; i <= 8; i++) sampler.add(i * 10.0);
+        assertEquals(65.0, sampler.getMovingAverage(), 1e-9, "Moving average should cover the last 4 samples");
+        assertEquals(45.0, sampler.getMean(), 1e-9);
+        assertEquals(80.0, sampler.getMax());
+
+        SplittableRandom random = new SplittableRandom(42);
+        ThroughputSampler uniform = new ThroughputSampler(10);
+        for (int i = 0; i < 20_000; i++) uniform.add(random.nextDouble(0, 1000));
+        assertEquals(500, uniform.getP50(), 25, "p50 of U(0,1000) should be near 500");
+        assertEquals(900, uniform.getP90(), 25, "p90 of U(0,1000) should be near 900");
+        assertEquals(990, uniform.getP99(), 10, "p99 of U(0,1000) should be near 990");
+    }
+
+    @Test
+    @DisplayName("Slow-start warm-up is excluded from the steady-state throughput")
+    void testSlowStartExclusion() {
+        SlowStartDetector slowStart = new SlowStartDetector();
+        long bytes = 0;
+        for (int tick = 1; tick <= 40; tick++) {
+            // 2 s of slow start at 10 Mbps, then 6 s at 100 Mbps, sampled every 200 ms
+            bytes += tick <= 10 ? 250_000 : 2_500_000;
+            slowStart.record(tick * 200_000_000L, bytes);
+        }
+        slowStart.finish();
+
+        assertEquals(2000, slowStart.getRampUpMs(), "The warm-up should end where the rate settles");
+        assertEquals(100.0, slowStart.getSteadyStateMbps(), 1e-6);
+        assertEquals(100.0, slowStart.getPeakSustainedMbps(), 1e-6);
+        assertEquals(77.5, slowStart.getOverallMbps(), 1e-6, "The overall figure still includes the warm-up");
+
+        SlowStartDetector tooShort = new SlowStartDetector();
+        tooShort.record(500_000_000L, 1_000_000);
+        tooShort.finish();
+        assertEquals(0, tooShort.getRampUpMs(), "Tests shorter than one window exclude nothing");
+        assertEquals(16.0, tooShort.getSteadyStateMbps(), 1e-6);
+    }
+
+    @Test
+    @DisplayName("Throughput histogram survives the compact encode/decode round trip")
+    void testThroughputHistogramEncoding() {
+        ThroughputHistogram histogram = new ThroughputHistogram();
+        histogram.record(0.0);
+        histogram.record(95.0);
+        histogram.record(100.0);
+        histogram.record(105.0);
+        histogram.record(1_000_000.0);
+
+        assertEquals(0, ThroughputHistogram.bucketOf(0.05), "Stalls should land in bucket 0");
+        assertEquals(ThroughputHistogram.BUCKET_COUNT - 1, ThroughputHistogram.bucketOf(1_000_000.0));
+        assertTrue(ThroughputHistogram.lowerBound(ThroughputHistogram.bucketOf(100.0)) <= 100.0);
+
+        ThroughputHistogram decoded = ThroughputHistogram.decode(histogram.encode());
+        assertEquals(histogram.encode(), decoded.encode());
+        assertEquals(5, decoded.getTotal());
+        assertEquals(0, ThroughputHistogram.decode("bogus,-1:4,999:2").getTotal(), "Malformed entries should be skipped");
+    }
+
     @Test
     @DisplayName("Verify Preferences persistence")
     void testSettingsPersistence() {
@@ -164,6 +602,306 @@ class NetpulseApplicationTests {
         assertEquals(5, repository.count());
     }
 
+    @Test
+    @DisplayName("Time-range queries filter and order in the database using the timestamp index")
+    void testTimeRangeQueries() {
+        LocalDateTime now = LocalDateTime.now();
+        for (int hoursAgo : new int[]{30, 2, 10, 50}) {
+            SpeedTestResult result = new SpeedTestResult();
+            result.setDownloadMbps(hoursAgo);
+            result.setTimestamp(now.minusHours(hoursAgo));
+            repository.save(result);
+        }
+
+        List<SpeedTestResult> lastDay = repository.findByTimestampAfterOrderByTimestampAsc(now.minusDays(1));
+        assertEquals(List.of(10.0, 2.0), lastDay.stream().map(SpeedTestResult::getDownloadMbps).toList(),
+                "Only the last day should be returned, oldest first");
+        assertEquals(4, repository.findByTimestampAfterOrderByTimestampAsc(now.minusYears(1)).size());
+
+        Integer indexes = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME = 'IDX_SPEED_TEST_RESULT_TIMESTAMP'",
+                Integer.class);
+        assertEquals(1, indexes, "The timestamp index should exist");
+    }
+
+    @Test
+    @DisplayName("History is aggregated into aligned time buckets in SQL")
+    void testHistoryAggregation() {
+        LocalDateTime monday = LocalDateTime.of(2025, 3, 3, 0, 0);
+        double[][] samples = {{0, 10, 1}, {1, 20, 2}, {23, 30, 3}, {24, 100, 10}, {24 * 7 + 5, 50, 5}};
+        for (double[] sample : samples) {
+            SpeedTestResult result = new SpeedTestResult();
+            result.setTimestamp(monday.plusHours((long) sample[0]).plusMinutes(30));
+            result.setDownloadMbps(sample[1]);
+            result.setUploadMbps(sample[2]);
+            repository.save(result);
+        }
+
+        List<HistoryBucket> daily = repository.aggregateHistory(monday.minusDays(1), BucketSize.DAILY.getSeconds());
+        assertEquals(3, daily.size(), "Five results should fall into three days");
+        HistoryBucket first = daily.get(0);
+        assertEquals(monday, first.getBucketStart(), "Daily buckets should start at local midnight");
+        assertEquals(3, first.getSamples());
+        assertEquals(10.0, first.getDownloadMin(), 1e-9);
+        assertEquals(20.0, first.getDownloadAvg(), 1e-9);
+        assertEquals(30.0, first.getDownloadMax(), 1e-9);
+        assertEquals(29.0, first.getDownloadP95(), 1e-9, "p95 should interpolate between the two fastest results");
+        assertEquals(2.0, first.getUploadAvg(), 1e-9);
+
+        List<HistoryBucket> weekly = repository.aggregateHistory(monday.minusDays(1), BucketSize.WEEKLY.getSeconds());
+        assertEquals(List.of(monday, monday.plusWeeks(1)), weekly.stream().map(HistoryBucket::getBucketStart).toList(),
+                "Weekly buckets should start on Monday");
+        assertEquals(4, weekly.get(0).getSamples());
+    }
+
+    @Test
+    @DisplayName("LTTB decimation keeps the endpoints and spikes within the point budget")
+    void testLttbDownsampling() {
+        int n = 100_000;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = i * 300.0;
+            y[i] = 100 + Math.sin(i / 500.0) * 5;
+        }
+        y[42_123] = 900;
+
+        int[] selected = LttbDownsampler.select(x, y, 500);
+        assertEquals(500, selected.length, "The budget should be filled exactly");
+        assertEquals(0, selected[0], "The first point should be kept");
+        assertEquals(n - 1, selected[selected.length - 1], "The last point should be kept");
+        for (int i = 1; i < selected.length; i++) {
+            assertTrue(selected[i] > selected[i - 1], "Indices should be strictly ascending");
+        }
+        assertTrue(java.util.Arrays.stream(selected).anyMatch(i -> i == 42_123), "A single-sample spike should survive");
+
+        assertEquals(3, LttbDownsampler.select(new double[3], new double[3], 500).length,
+                "Series within the budget should be returned unchanged");
+    }
+
+    @Test
+    @DisplayName("History buffer should slide its window in place and decimate as a slice")
+    void testHistoryBufferSlides() {
+        HistoryBuffer buffer = new HistoryBuffer(16);
+        for (int i = 0; i < 1_000; i++) {
+            buffer.append(i, i % 7, 1, i + 1);
+            if (i >= 100) assertEquals(1, buffer.evictThrough(i - 100), "Each append should expire one point");
+        }
+        assertEquals(100, buffer.size());
+        assertEquals(900.0, buffer.epochs()[buffer.start()], "The oldest live point should follow the window");
+        assertEquals(1_000, buffer.maxId());
+        assertTrue(buffer.epochs().length <= 256, "Evicted space should be reused instead of growing the arrays");
+
+        int[] selected = LttbDownsampler.select(buffer.epochs(), buffer.download(), buffer.start(), buffer.end(), 10);
+        assertEquals(buffer.start(), selected[0], "Indices should refer to the backing arrays");
+        assertEquals(buffer.end() - 1, selected[selected.length - 1]);
+    }
+
+    @Test
+    @DisplayName("Retention rolls old results into hourly and daily tiers that history still reads")
+    void testRetentionRollup() {
+        LocalDateTime now = LocalDateTime.of(2025, 6, 15, 12, 0);
+        LocalDateTime old = LocalDateTime.of(2025, 5, 1, 10, 0);
+        double[][] samples = {{0, 10, 1}, {10, 20, 2}, {50, 30, 3}, {60 * 5, 60, 6}};
+        for (double[] sample : samples) {
+            SpeedTestResult result = new SpeedTestResult();
+            result.setTimestamp(old.plusMinutes((long) sample[0]));
+            result.setDownloadMbps(sample[1]);
+            result.setUploadMbps(sample[2]);
+            repository.save(result);
+        }
+        SpeedTestResult recent = new SpeedTestResult();
+        recent.setTimestamp(now.minusDays(1));
+        recent.setDownloadMbps(100);
+        recent.setUploadMbps(10);
+        repository.save(recent);
+
+        assertEquals(4, retentionService.compact(now), "Results older than the raw retention should be removed");
+        assertEquals(1, repository.count());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM RESULT_ROLLUP WHERE BUCKET_SIZE = 'HOURLY'", Integer.class));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM RESULT_ROLLUP WHERE BUCKET_SIZE = 'DAILY'", Integer.class));
+        assertTrue(retentionService.isCompactionPending());
+        assertEquals(0, retentionService.compact(now), "A second pass should find nothing left to roll up");
+
+        List<HistoryBucket> daily = repository.aggregateHistory(old.minusDays(1), BucketSize.DAILY.getSeconds());
+        assertEquals(2, daily.size(), "The rolled-up day and the raw day should both be read");
+        HistoryBucket rolled = daily.get(0);
+        assertEquals(old.toLocalDate().atStartOfDay(), rolled.getBucketStart());
+        assertEquals(4, rolled.getSamples());
+        assertEquals(10.0, rolled.getDownloadMin(), 1e-9);
+        assertEquals(30.0, rolled.getDownloadAvg(), 1e-9);
+        assertEquals(60.0, rolled.getDownloadMax(), 1e-9);
+        assertEquals(3.0, rolled.getUploadAvg(), 1e-9);
+        assertEquals(100.0, daily.get(1).getDownloadAvg(), 1e-9);
+
+        List<HistoryBucket> hourly = repository.aggregateHistory(old.minusDays(1), BucketSize.HOURLY.getSeconds());
+        assertEquals(3, hourly.size(), "Hourly requests should read the hourly tier");
+        assertEquals(3, hourly.get(0).getSamples());
+        assertEquals(20.0, hourly.get(0).getDownloadAvg(), 1e-9);
+        assertEquals(29.0, hourly.get(0).getDownloadP95(), 1e-9, "Rollups should keep the exact p95 of their bucket");
+
+        // Once the hourly tier is pruned, hourly requests fall back to the daily rollup
+        assertEquals(0, new RetentionService(jdbcTemplate, transactionTemplate, traceStore, new HistoryCache(repository, pointRepository, 1), true, 30, 30).compact(now));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM RESULT_ROLLUP WHERE BUCKET_SIZE = 'HOURLY'", Integer.class));
+        hourly = repository.aggregateHistory(old.minusDays(1), BucketSize.HOURLY.getSeconds());
+        assertEquals(2, hourly.size());
+        assertEquals(4, hourly.get(0).getSamples());
+    }
+
+    @Test
+    @DisplayName("History cache slides raw ranges, folds in new results and evicts the least recently used range")
+    void testHistoryCache() {
+        LocalDateTime now = LocalDateTime.of(2025, 6, 15, 12, 0);
+        for (int hours : new int[] {30, 20, 10, 2}) {
+            SpeedTestResult result = new SpeedTestResult();
+            result.setTimestamp(now.minusHours(hours));
+            result.setDownloadMbps(hours);
+            repository.save(result);
+        }
+        HistoryCache cache = new HistoryCache(repository, pointRepository, 2);
+
+        HistoryBuffer day = cache.getPoints("day", now.minusDays(1));
+        List<SpeedTestResult> entities = repository.findByTimestampAfterOrderByTimestampAsc(now.minusDays(1));
+        assertEquals(entities.size(), day.size());
+        for (int i = 0; i < day.size(); i++) {
+            assertEquals(entities.get(i).getId(), day.ids()[day.start() + i], "The projection should match the entity path");
+            assertEquals(HistoryBuffer.toEpochSeconds(entities.get(i).getTimestamp()), day.epochs()[day.start() + i]);
+            assertEquals(entities.get(i).getDownloadMbps(), day.download()[day.start() + i]);
+        }
+        assertEquals(3, cache.getPoints("day", now.minusDays(1)).size());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getPoints("day", now.minusHours(15)).size(), "A later cutoff should slide the cached window");
+
+        SpeedTestResult fresh = new SpeedTestResult();
+        fresh.setTimestamp(now.minusMinutes(1));
+        fresh.setDownloadMbps(99);
+        repository.save(fresh);
+        cache.addAll(List.of(fresh));
+        HistoryBuffer slid = cache.getPoints("day", now.minusHours(15));
+        assertEquals(3, slid.size(), "New results should be appended without a query");
+        assertEquals(99.0, slid.download()[slid.end() - 1]);
+        assertEquals(1, cache.getMissCount());
+        long shownId = slid.ids()[slid.start() + 1];
+        HistoryBuffer newer = cache.getPointsAfter("day", now.minusHours(15), shownId);
+        assertEquals(1, newer.size(), "An incremental refresh should only return results after the given id");
+        assertEquals(fresh.getId(), newer.ids()[newer.start()]);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, new HistoryCache(repository, pointRepository, 2).getPointsAfter("day", now.minusDays(1), shownId).size(),
+                "A miss should query only the newer rows");
+
+        HistoryCache racing = new HistoryCache(repository, pointRepository, 2);
+        assertEquals(4, racing.getPoints("day", now.minusDays(1)).size(), "A miss should load the committed result");
+        racing.addAll(List.of(fresh));
+        assertEquals(4, racing.getPoints("day", now.minusDays(1)).size(),
+                "A result loaded by a miss before the writer pushes it should not be added twice");
+
+        cache.getBuckets("year", now.minusYears(1), BucketSize.DAILY);
+        cache.getBuckets("year", now.minusYears(1).plusMinutes(5), BucketSize.DAILY);
+        assertEquals(2, cache.getMissCount(), "A cutoff within the same first bucket should hit");
+        cache.addAll(List.of(fresh));
+        cache.getBuckets("year", now.minusYears(1), BucketSize.DAILY);
+        assertEquals(3, cache.getMissCount(), "New results should invalidate aggregated ranges");
+
+        cache.getBuckets("all", null, BucketSize.WEEKLY);
+        assertEquals(2, cache.size(), "The cache should stay within its bound");
+        cache.getPoints("day", now.minusHours(15));
+        assertEquals(5, cache.getMissCount(), "The least recently used range should have been evicted");
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "netpulse.benchmark", matches = "true")
+    @DisplayName("Benchmark: chart point projection against entity loading (opt-in, -Dnetpulse.benchmark=true)")
+    void benchmarkHistoryProjection() {
+        int rows = Integer.getInteger("netpulse.benchmark.rows", 1_000_000);
+        LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0);
+        SplittableRandom random = new SplittableRandom(7);
+        List<Object[]> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new Object[] {java.sql.Timestamp.valueOf(start.plusMinutes(i)), random.nextDouble(500), random.nextDouble(50)});
+            if (batch.size() == 10_000 || i == rows - 1) {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                        "INSERT INTO SPEED_TEST_RESULT (TIMESTAMP, DOWNLOAD_MBPS, UPLOAD_MBPS) VALUES (?, ?, ?)", batch));
+                batch.clear();
+            }
+        }
+
+        try {
+            LocalDateTime cutoff = start.minusDays(1);
+            for (int round = 0; round < 2; round++) {
+                long[] entities = measureRetained(() -> repository.findByTimestampAfterOrderByTimestampAsc(cutoff), rows);
+                long[] points = measureRetained(() -> pointRepository.findAfter(cutoff), rows);
+                System.out.printf("History load of %,d rows: entities %,d ms / %,d MB retained, projection %,d ms / %,d MB retained%n",
+                        rows, entities[0], entities[1] >> 20, points[0], points[1] >> 20);
+                if (round == 1) {
+                    assertTrue(points[1] * 4 < entities[1], "The projection should retain far less memory than entities");
+                    assertTrue(points[0] < entities[0], "The projection should load faster than entities");
+                }
+            }
+        } finally {
+            // Bulk delete; the per-test cleanup would otherwise load every row as an entity
+            jdbcTemplate.update("DELETE FROM SPEED_TEST_RESULT");
+        }
+    }
+
+    /**
+     * Runs a history load and reports its duration and the heap it keeps reachable.
+     * @return The elapsed milliseconds and the retained bytes.
+     */
+    private static long[] measureRetained(java.util.function.Supplier<Object> load, int expectedRows) {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        long startNanos = System.nanoTime();
+        Object result = load.get();
+        long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+        System.gc();
+        long retained = runtime.totalMemory() - runtime.freeMemory() - before;
+        int size = result instanceof HistoryBuffer buffer ? buffer.size() : ((List<?>) result).size();
+        assertEquals(expectedRows, size);
+        return new long[] {elapsedMs, retained};
+    }
+
+    @Test
+    @DisplayName("History export and import should round-trip through CSV and NDJSON")
+    void testHistoryTransferRoundTrip() throws IOException {
+        SpeedTestResult full = new SpeedTestResult();
+        full.setTimestamp(LocalDateTime.of(2025, 3, 1, 8, 30, 15));
+        full.setDownloadMbps(512.25);
+        full.setUploadMbps(48.5);
+        full.setDownloadHistogram("0:3,1:\"7\",2:1");
+        full.setBufferbloatGrade(BufferbloatGrade.B);
+        full.setServerAddress("speed.example.net");
+        full.setDownloadBytes(1L << 33);
+        SpeedTestResult sparse = new SpeedTestResult();
+        sparse.setTimestamp(LocalDateTime.of(2025, 3, 2, 9, 0));
+        sparse.setDownloadMbps(10);
+        repository.saveAll(List.of(full, sparse));
+
+        for (HistoryFormat format : HistoryFormat.values()) {
+            StringWriter out = new StringWriter();
+            assertEquals(2, historyTransferService.export(format, out).rows());
+            repository.deleteAll();
+
+            String garbage = format == HistoryFormat.CSV
+                    ? "not-a-date,1,2\n,5,6\n"
+                    : "{\"timestamp\":[1]}\n{\"downloadMbps\":5.0}\n";
+            HistoryTransferService.TransferStats stats = historyTransferService.importFrom(format, new StringReader(out + garbage));
+            assertEquals(2, stats.rows(), format + " should import every exported row");
+            assertEquals(2, stats.skipped(), format + " should skip malformed records and records without a timestamp");
+
+            List<SpeedTestResult> imported = repository.findByTimestampAfterOrderByTimestampAsc(LocalDateTime.of(2025, 1, 1, 0, 0));
+            SpeedTestResult first = imported.getFirst();
+            assertEquals(full.getTimestamp(), first.getTimestamp());
+            assertEquals(512.25, first.getDownloadMbps());
+            assertEquals("0:3,1:\"7\",2:1", first.getDownloadHistogram(), "Quoting should survive commas and quotes");
+            assertEquals(BufferbloatGrade.B, first.getBufferbloatGrade());
+            assertEquals(Long.valueOf(1L << 33), first.getDownloadBytes());
+            assertNull(imported.get(1).getLatencyAvgMs(), "Missing values should stay null");
+            assertEquals(0.0, imported.get(1).getUploadMbps());
+        }
+    }
+
     @Test
     @DisplayName("Verify DiagnosticService is injected")
     void testDiagnosticServiceInjection() {